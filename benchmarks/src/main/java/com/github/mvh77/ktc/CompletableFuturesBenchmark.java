@@ -0,0 +1,96 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompletableFuturesBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int futures;
+
+    private List<CompletableFuture<Integer>> completed;
+
+    @Setup
+    public void setup() {
+        completed = new ArrayList<>(futures);
+        for (int i = 0; i < futures; i++) {
+            completed.add(CompletableFuture.completedFuture(i));
+        }
+    }
+
+    @Benchmark
+    public Object sequenceCompleted() {
+        return CompletableFutures.sequence(completed, Vector.collector()).join();
+    }
+
+    @Benchmark
+    public Object combinedCompleted() {
+        return CompletableFutures.combined(completed, Vector.collector()).join();
+    }
+
+    @Benchmark
+    public Object traverseCompleted() {
+        return CompletableFutures.traverse(completed, Function.identity(), 64).join();
+    }
+
+    // futures completing after the combinator subscribed to them, the way admin client responses do
+    @Benchmark
+    public Object sequencePending() {
+        return pending(CompletableFutures::sequence, Vector.collector());
+    }
+
+    @Benchmark
+    public Object combinedPending() {
+        return pending(CompletableFutures::combined, Vector.collector());
+    }
+
+    // a concurrent collector doesn't go through the accumulation lock
+    @Benchmark
+    public Object combinedPendingConcurrent() {
+        return pending(CompletableFutures::combined, Collector.<Integer, Queue<Integer>>of(ConcurrentLinkedQueue::new, Queue::add,
+                (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                },
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.IDENTITY_FINISH));
+    }
+
+    private <I> I pending(BiFunction<List<CompletableFuture<Integer>>, Collector<Integer, ?, I>, CompletableFuture<I>> combinator,
+                          Collector<Integer, ?, I> collector) {
+        var pending = new ArrayList<CompletableFuture<Integer>>(futures);
+        for (int i = 0; i < futures; i++) {
+            pending.add(new CompletableFuture<>());
+        }
+        var result = combinator.apply(pending, collector);
+        for (int i = 0; i < futures; i++) {
+            pending.get(i).complete(i);
+        }
+        return result.join();
+    }
+}
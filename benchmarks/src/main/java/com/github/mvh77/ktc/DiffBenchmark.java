@@ -0,0 +1,67 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.Map;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int topics;
+
+    private SyntheticCluster cluster;
+    private KafkaTopicConfigurator configurator;
+    // inputs of MapOps.toConfigOps, prepared up front to measure the diff on its own
+    private Map<String, Map<String, ConfigEntry>> currentConfigs;
+    private Map<String, Map<String, String>> targetConfigs;
+
+    @Setup
+    public void setup() {
+        cluster = new SyntheticCluster(topics);
+        configurator = new KafkaTopicConfigurator();
+        var shared = cluster.current.keySet().retainAll(cluster.definitions.keySet());
+        currentConfigs = shared.toMap(topic -> Tuple.of(topic, cluster.entries.apply(topic).toMap(ce -> Tuple.of(ce.name(), ce))));
+        targetConfigs = shared.toMap(topic -> Tuple.of(topic, cluster.definitions.apply(topic).getConfigMap()));
+    }
+
+    @Benchmark
+    public Object topicsToCreate() {
+        return configurator.getTopicsToCreate(cluster.current, cluster.definitions);
+    }
+
+    @Benchmark
+    public Object topicsToUpdate() {
+        return configurator.getTopicsToUpdate(cluster.current, cluster.definitions);
+    }
+
+    // reducing the described entries to interned profiles
+    @Benchmark
+    public Object topicStates() {
+        return SyntheticCluster.states(cluster.entries);
+    }
+
+    @Benchmark
+    public void toConfigOps(Blackhole blackhole) {
+        currentConfigs.forEach((topic, current) -> blackhole.consume(MapOps.toConfigOps(current, targetConfigs.apply(topic))));
+    }
+}
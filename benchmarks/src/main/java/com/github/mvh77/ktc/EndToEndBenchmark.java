@@ -0,0 +1,96 @@
+package com.github.mvh77.ktc;
+
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A full run of {@link KafkaTopicConfigurator#execute} (parse, describe, diff, create, update, partition increases and
+ * deletes) against an in-process cluster, with every admin request answered after latencyMs. Each invocation starts
+ * from a freshly populated cluster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    private int topics;
+
+    @Param({"0", "20"})
+    private long latencyMs;
+
+    // executor completing the admin futures
+    @Param({"pool", "direct", "common"})
+    private String completionExecutor;
+
+    private SyntheticCluster synthetic;
+    private Path dir;
+    private String definitions;
+    private ClientSettings settings;
+    private InMemoryAdmin cluster;
+
+    @Setup
+    public void setup() throws IOException {
+        synthetic = new SyntheticCluster(topics);
+        dir = Files.createTempDirectory("ktc-bench");
+        definitions = synthetic.writeDefinitions(dir, 10);
+        settings = new ClientSettings();
+        settings.setMutationRatePerSecond(0);
+        settings.setCompletionExecutor(completionExecutor);
+    }
+
+    @Setup(Level.Invocation)
+    public void populate() {
+        cluster = new InMemoryAdmin(3, latencyMs);
+        synthetic.entries.forEach((topic, entries) -> cluster.addTopic(topic, 6, 3, entries
+                .filter(ce -> ce.source() == ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG)
+                .toJavaStream()
+                .collect(Collectors.toMap(ConfigEntry::name, ConfigEntry::value))));
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdown() {
+        cluster.shutdown();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean execute() {
+        var discard = new PrintStream(OutputStream.nullOutputStream());
+        var report = Report.create("text", Report.Verbosity.SUMMARY, discard, discard);
+        var configurator = new KafkaTopicConfigurator(new RunMetrics(), report, (bootstrap, extraProperties, s, metrics) -> new CustomAdminClient(cluster, s, metrics));
+        return configurator.execute("in-memory", definitions, null, settings, TopicScope.all(), null, null,
+                false, true, false, true, false);
+    }
+}
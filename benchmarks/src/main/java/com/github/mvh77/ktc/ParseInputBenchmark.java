@@ -0,0 +1,58 @@
+package com.github.mvh77.ktc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseInputBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int topics;
+
+    @Param({"1", "100"})
+    private int files;
+
+    private Path dir;
+    private String definitions;
+    private KafkaTopicConfigurator configurator;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("ktc-bench");
+        definitions = new SyntheticCluster(topics).writeDefinitions(dir, files);
+        configurator = new KafkaTopicConfigurator();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Object parseInput() {
+        return configurator.parseInput(definitions, false);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import org.apache.kafka.clients.admin.ConfigEntries;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A generated cluster state and a set of definitions differing from it. Topics share one of a dozen override profiles,
+ * on top of which a share of the definitions sets, changes or drops values, adds new topics or leaves topics out.
+ */
+class SyntheticCluster {
+
+    // topic level configs of a 2.7 broker with their defaults, the same as the in-memory cluster's
+    static final Map<String, String> DEFAULTS = HashMap.ofAll(InMemoryAdmin.DEFAULTS);
+
+    private static final int PROFILES = 12;
+
+    // described config entries as returned by the admin client, and the same reduced to topic states
+    final Map<String, Set<ConfigEntry>> entries;
+    final Map<String, TopicState> current;
+    final Map<String, TopicDefinition> definitions;
+
+    SyntheticCluster(int topics) {
+        var random = new Random(topics);
+        var names = DEFAULTS.keySet().toVector().sorted();
+        var profiles = Vector.range(0, PROFILES)
+                .map(p -> names.sortBy(name -> (name + p).hashCode()).take(2 + p % 4)
+                        .toMap(name -> Tuple.of(name, String.valueOf(1000 * (p + 1)))));
+
+        var current = HashMap.<String, Set<ConfigEntry>>empty();
+        var definitions = HashMap.<String, TopicDefinition>empty();
+        for (int i = 0; i < topics; i++) {
+            var topic = "team" + (i % 50) + ".service" + (i % 997) + ".events.v" + i;
+            var overrides = profiles.get(i % PROFILES);
+            var roll = random.nextInt(100);
+            if (roll >= 5) { // 5% of the definitions are new topics
+                current = current.put(topic, entries(overrides));
+            }
+            if (roll < 95) { // 5% of the topics are missing from the definitions
+                var config = new TreeMap<>(overrides.toJavaMap());
+                if (roll >= 70 && roll < 80) { // changed value
+                    config.put(names.get(roll % names.size()), "42");
+                } else if (roll >= 80 && roll < 85 && !config.isEmpty()) { // dropped override
+                    config.remove(config.firstKey());
+                }
+                var definition = new TopicDefinition();
+                definition.setPartitions(roll >= 85 && roll < 90 ? 12 : 6);
+                definition.setReplication(3);
+                definition.setConfig(config);
+                definitions = definitions.put(topic, definition);
+            }
+        }
+        this.entries = current;
+        this.current = states(current);
+        this.definitions = definitions;
+    }
+
+    private static Set<ConfigEntry> entries(Map<String, String> overrides) {
+        return DEFAULTS
+                .map((name, value) -> overrides.get(name)
+                        .map(v -> Tuple.of(name, ConfigEntries.of(name, v, ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG)))
+                        .getOrElse(() -> Tuple.of(name, ConfigEntries.of(name, value, ConfigEntry.ConfigSource.DEFAULT_CONFIG))))
+                .values()
+                .toSet();
+    }
+
+    static Map<String, TopicState> states(Map<String, Set<ConfigEntry>> entries) {
+        var interner = new ConfigProfile.Interner();
+        return entries.mapValues(ces -> new TopicState(6, 3, interner.intern(ces)));
+    }
+
+    // writes the definitions to the given number of files, returns them in the form of the -definitions option
+    String writeDefinitions(Path dir, int files) {
+        var grouped = definitions.toVector().sortBy(t2 -> t2._1).zipWithIndex().groupBy(t2 -> t2._2 % files);
+        return grouped.values()
+                .map(entries -> {
+                    var yaml = new StringBuilder("topics:\n");
+                    entries.forEach(t2 -> {
+                        var definition = t2._1._2;
+                        yaml.append("  ").append(t2._1._1).append(":\n")
+                                .append("    partitions: ").append(definition.getPartitions()).append('\n')
+                                .append("    replication: ").append(definition.getReplication()).append('\n')
+                                .append("    config:\n");
+                        definition.getConfig().forEach((k, v) -> yaml.append("      ").append(k).append(": ").append(v).append('\n'));
+                    });
+                    try {
+                        var file = Files.createTempFile(dir, "topics", ".yml");
+                        Files.writeString(file, yaml);
+                        return file.toString();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .mkString(",");
+    }
+}
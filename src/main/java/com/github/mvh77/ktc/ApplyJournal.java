@@ -0,0 +1,134 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The plan of a run followed by the outcome of every topic operation as it completes, one JSON object per line and
+ * flushed after every line. A run that failed partway can be resumed from the journal with the operations that didn't
+ * succeed, a line cut short by a crash at the end of the file is ignored.
+ */
+class ApplyJournal {
+
+    // records nothing
+    static final ApplyJournal NONE = new ApplyJournal(null);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Writer out;
+
+    private ApplyJournal(Writer out) {
+        this.out = out;
+    }
+
+    // starts the journal of a plan, replacing the file
+    static ApplyJournal start(String path, Plan plan) {
+        var journal = open(path, StandardOpenOption.TRUNCATE_EXISTING);
+        journal.write(new Entry(PlanFile.toJson(plan), null, null, null, null));
+        return journal;
+    }
+
+    // continues the journal of a resumed run
+    static ApplyJournal resume(String path) {
+        return open(path, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The operations of the journaled plan which haven't succeeded yet. When an operation was recorded more than once,
+     * because it was retried or resumed, the last outcome counts.
+     */
+    static Plan pending(String path) {
+        Vector<String> lines;
+        try {
+            lines = Vector.ofAll(Files.readAllLines(Path.of(path), StandardCharsets.UTF_8)).filter(line -> !line.isBlank());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("the journal " + path + " is empty");
+        }
+        var entries = lines.zipWithIndex().flatMap(t2 -> {
+            try {
+                return Vector.of(MAPPER.readValue(t2._1, Entry.class));
+            } catch (JsonProcessingException e) {
+                if (t2._2 == lines.size() - 1) return Vector.empty();
+                throw new IllegalArgumentException("line " + (t2._2 + 1) + " of the journal " + path + " can't be read", e);
+            }
+        });
+        if (entries.isEmpty() || entries.head().getPlan() == null) {
+            throw new IllegalArgumentException("the journal " + path + " doesn't start with a plan");
+        }
+        Map<Tuple2<String, String>, Boolean> outcomes = entries.tail()
+                .foldLeft(HashMap.empty(), (map, entry) -> map.put(Tuple.of(entry.getAction(), entry.getTopic()), entry.getSuccess()));
+        return PlanFile.fromJson(entries.head().getPlan(), path)
+                .without((action, topic) -> outcomes.get(Tuple.of(action, topic)).getOrElse(false));
+    }
+
+    // records the outcomes and returns them
+    Map<String, Try<Void>> record(String action, Map<String, Try<Void>> outcomes) {
+        if (out != null) {
+            outcomes.forEach((topic, outcome) -> write(new Entry(null, action, topic, outcome.isSuccess(),
+                    outcome.isFailure() ? String.valueOf(outcome.getCause().getMessage()) : null)));
+        }
+        return outcomes;
+    }
+
+    void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static ApplyJournal open(String path, StandardOpenOption mode) {
+        try {
+            return new ApplyJournal(Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void write(Entry entry) {
+        try {
+            out.write(MAPPER.writeValueAsString(entry));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // either the plan, on the first line, or the outcome of an operation
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Entry {
+        private PlanFile.PlanJson plan;
+        private String action;
+        private String topic;
+        private Boolean success;
+        private String error;
+    }
+}
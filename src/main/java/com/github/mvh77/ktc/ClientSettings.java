@@ -0,0 +1,55 @@
+package com.github.mvh77.ktc;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ClientSettings {
+
+    // number of topics sent in a single describeConfigs request
+    private int describeBatchSize = 200;
+    // number of describeConfigs batches awaiting a response at any time
+    private int describeMaxInFlight = 4;
+    // number of topics sent in a single createTopics/incrementalAlterConfigs request
+    private int applyChunkSize = 100;
+    // number of apply chunks awaiting a response at any time
+    private int applyMaxInFlight = 2;
+    // deadline of an apply chunk is applyTimeoutMs + applyTimeoutPerTopicMs * chunk size
+    private int applyTimeoutMs = 5000;
+    private int applyTimeoutPerTopicMs = 100;
+    // number of partitions reassigned at once when changing replication factors
+    private int reassignmentWaveSize = 50;
+    // replication throttle of the brokers taking part in a reassignment, in bytes per second
+    private long reassignmentThrottleBytes = 10_485_760;
+    // interval between checks whether a reassignment wave is done
+    private int reassignmentPollMs = 5000;
+    // time a reassignment wave gets to complete before it is cancelled and its topics fail
+    private int reassignmentTimeoutMs = 3_600_000;
+    // number of topics per wave of partition increases or deletions
+    private int mutationWaveSize = 500;
+    // interval between checks whether the metadata shows the changes of a wave, and how long to wait for it
+    private int mutationConfirmPollMs = 1000;
+    private int mutationConfirmTimeoutMs = 60000;
+    // topic mutations covered by the controller mutation quota (creations, partition increases, deletions) sent per
+    // second, unlimited if 0. halved whenever the quota throttles a request, and raised again as requests go through
+    private int mutationRatePerSecond = 100;
+    // number of times topics rejected by the controller mutation quota are sent again
+    private int mutationQuotaRetries = 10;
+    // number of times -resume retries topics failing with a retriable error
+    private int resumeRetries = 5;
+    // backoff before the first retry of -resume, doubled for every following one
+    private long resumeBackoffMs = 1000;
+    // number of topics described, diffed and applied at a time, all topics are described first if 0
+    private int streamChunkSize = 0;
+    // runs the processing of admin responses: a pool of completionThreads threads, direct on the network thread of
+    // the admin client or the common fork join pool
+    private String completionExecutor = CompletionExecutor.POOL;
+    private int completionThreads = 2;
+    // definitions are validated against it if set, dry runs then send no validation requests to the brokers
+    private ConfigSchema configSchema;
+
+    int applyTimeoutMs(int chunkSize) {
+        return applyTimeoutMs + applyTimeoutPerTopicMs * chunkSize;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.LinkedHashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Vector;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Reconciles one set of definitions with several clusters. The definitions are parsed once, every cluster gets its
+ * own admin client, report and metrics, and at most maxParallelClusters clusters are reconciled at the same time.
+ */
+class ClusterFanOut {
+
+    private final RunMetrics metrics;
+    private final Report report;
+    private final CustomAdminClient.Factory clients;
+
+    ClusterFanOut(RunMetrics metrics, Report report) {
+        this(metrics, report, CustomAdminClient::new);
+    }
+
+    ClusterFanOut(RunMetrics metrics, Report report, CustomAdminClient.Factory clients) {
+        this.metrics = metrics;
+        this.report = report;
+        this.clients = clients;
+    }
+
+    // returns false if any of the clusters failed
+    boolean execute(LinkedHashMap<String, ClusterProfile> clusters, String definitions, ClientSettings settings, TopicScope scope, int maxParallelClusters,
+                    boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        var parsed = new KafkaTopicConfigurator(metrics, report).parseDefinitions(definitions, noReplication);
+        if (parsed.isEmpty()) {
+            return false;
+        }
+        var definedTopics = parsed.get();
+        var executor = Executors.newCachedThreadPool();
+        try {
+            Map<String, Boolean> results = CompletableFutures.traverse(clusters.toVector().asJava(), cluster -> CompletableFuture.supplyAsync(() -> {
+                        var clusterReport = report.forCluster(cluster._1);
+                        try {
+                            var ok = new KafkaTopicConfigurator(metrics.forCluster(cluster._1), clusterReport, clients)
+                                    .reconcile(cluster._2.getBootstrap(), cluster._2.getExtraProperties(), settings, scope, definedTopics,
+                                            null, null, dryRun, removeTopics, incrementPartitionCount, changeReplicationFactor);
+                            return Tuple.of(cluster._1, ok);
+                        } catch (RuntimeException e) {
+                            clusterReport.error("Could not reconcile the cluster with", e);
+                            return Tuple.of(cluster._1, false);
+                        }
+                    }, executor), maxParallelClusters)
+                    .thenApply(list -> LinkedHashMap.ofEntries(Vector.<Tuple2<String, Boolean>>ofAll(list)))
+                    .join();
+            report.clusters(results);
+            return results.values().forAll(ok -> ok);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.collection.LinkedHashMap;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A named cluster to reconcile, read from a clusters file:
+ * <pre>
+ * clusters:
+ *   eu-prod:
+ *     bootstrap: kafka1.eu:9092,kafka2.eu:9092
+ *     extraProperties: eu-prod.properties
+ * </pre>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterProfile {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String bootstrap;
+    // extra .properties files of the client, in the form config1.properties,config2.properties,...
+    private String extraProperties;
+
+    // the clusters in the order of the file
+    static LinkedHashMap<String, ClusterProfile> readAll(String path) {
+        ClustersYaml yaml;
+        try (var reader = new FileReader(path)) {
+            yaml = MAPPER.convertValue(new Yaml().load(reader), ClustersYaml.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (yaml == null || yaml.getClusters().isEmpty()) {
+            throw new IllegalArgumentException("no clusters defined in " + path);
+        }
+        var clusters = LinkedHashMap.ofAll(yaml.getClusters());
+        for (var cluster : clusters) {
+            if (cluster._2 == null || cluster._2.getBootstrap() == null || cluster._2.getBootstrap().isBlank()) {
+                throw new IllegalArgumentException("cluster " + cluster._1 + " in " + path + " has no bootstrap");
+            }
+        }
+        return clusters;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class ClustersYaml {
+        private Map<String, ClusterProfile> clusters = Map.of();
+    }
+}
@@ -3,86 +3,191 @@ package com.github.mvh77.ktc;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 public class CompletableFutures {
 
+    // completes on the thread completing the last input
+    private static final Executor DIRECT = Runnable::run;
+
+    // fails on the first failed future
     public static <T, A, I extends Iterable<? extends T>> CompletableFuture<I> sequence(Collection<CompletableFuture<T>> collection,
                                                                                         Collector<? super T, A, I> collector) {
-        var a = collector.supplier().get();
-        var result = new CompletableFuture<I>();
-        if (collection.isEmpty()) {
-            result.completeAsync(() -> collector.finisher().apply(a));
-        } else {
-            var count = new AtomicInteger(collection.size());
-            var accumulator = concurrentAcc(collector);
-            collection.forEach(cf -> cf.whenComplete((t, th) -> {
-                if (t != null && count.get() > 0) {
-                    accumulator.accept(a, t);
-                    if (count.decrementAndGet() == 0) {
-                        // completes if not already failed
-                        result.completeAsync(() -> collector.finisher().apply(a));
-                    }
-                }
-                if (th != null) {
-                    // fail on first exception
-                    result.completeExceptionally(th);
-                    count.set(-1);
-                }
-            }));
-        }
-        return result;
+        return collect(new Traversal<>(collection, Function.<CompletableFuture<T>>identity(), Integer.MAX_VALUE, true, DIRECT).run(), collector);
     }
 
+    // waits for all futures, fails with an AccumulatedThrowable if any of them failed
     public static <T, A, I extends Iterable<? extends T>> CompletableFuture<I> combined(Collection<CompletableFuture<T>> collection,
                                                                                         Collector<? super T, A, I> collector) {
-        var a = collector.supplier().get();
+        return collect(new Traversal<>(collection, Function.<CompletableFuture<T>>identity(), Integer.MAX_VALUE, false, DIRECT).run(), collector);
+    }
+
+    /**
+     * Applies f to every input, with at most maxInFlight of the resulting stages incomplete at any time. The next input
+     * is only started once a running one completes. Fails on the first failed stage, without starting any more inputs.
+     * The results are in the order of the inputs.
+     */
+    public static <T, R> CompletableFuture<List<R>> traverse(Collection<? extends T> inputs,
+                                                             Function<? super T, ? extends CompletionStage<R>> f,
+                                                             int maxInFlight) {
+        return traverse(inputs, f, maxInFlight, DIRECT);
+    }
+
+    // as above, the returned future is completed on the given executor
+    public static <T, R> CompletableFuture<List<R>> traverse(Collection<? extends T> inputs,
+                                                             Function<? super T, ? extends CompletionStage<R>> f,
+                                                             int maxInFlight,
+                                                             Executor executor) {
+        return new Traversal<T, R>(inputs, f, maxInFlight, true, executor).run();
+    }
+
+    /**
+     * As {@link #traverse(Collection, Function, int)}, but every input is run even if some of them fail, the failures
+     * are reported together in an {@link AccumulatedThrowable}.
+     */
+    public static <T, R> CompletableFuture<List<R>> traverseCombined(Collection<? extends T> inputs,
+                                                                     Function<? super T, ? extends CompletionStage<R>> f,
+                                                                     int maxInFlight) {
+        return traverseCombined(inputs, f, maxInFlight, DIRECT);
+    }
+
+    public static <T, R> CompletableFuture<List<R>> traverseCombined(Collection<? extends T> inputs,
+                                                                     Function<? super T, ? extends CompletionStage<R>> f,
+                                                                     int maxInFlight,
+                                                                     Executor executor) {
+        return new Traversal<T, R>(inputs, f, maxInFlight, false, executor).run();
+    }
+
+    // accumulation happens on a single thread once all results are in, the collector needs no synchronization.
+    // failures are passed on as they are instead of being wrapped in a CompletionException.
+    private static <T, A, I> CompletableFuture<I> collect(CompletableFuture<List<T>> results, Collector<? super T, A, I> collector) {
         var result = new CompletableFuture<I>();
-        if (collection.isEmpty()) {
-            result.completeAsync(() -> collector.finisher().apply(a));
-        } else {
-            var count = new AtomicInteger(collection.size());
-            var errors = new ConcurrentLinkedQueue<Throwable>();
-            var accumulator = concurrentAcc(collector);
-
-            collection.forEach(cf -> cf.whenComplete((t, th) -> {
-                if (t != null) {
-                    accumulator.accept(a, t);
-                }
-                if (th != null) {
-                    errors.add(th);
-                }
-                if (count.decrementAndGet() == 0) {
-                    if (errors.isEmpty()) {
-                        result.completeAsync(() -> collector.finisher().apply(a));
-                    } else {
-                        result.completeExceptionally(new AccumulatedThrowable(List.copyOf(errors)));
+        results.whenComplete((list, th) -> {
+            if (th != null) {
+                result.completeExceptionally(th);
+                return;
+            }
+            try {
+                var a = collector.supplier().get();
+                var accumulator = collector.accumulator();
+                for (T t : list) {
+                    if (t != null) {
+                        accumulator.accept(a, t);
                     }
                 }
-            }));
-        }
+                result.complete(collector.finisher().apply(a));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
         return result;
     }
 
-    private static <T, A, R> BiConsumer<A, T> concurrentAcc(Collector<T, A, R> collector) {
-        var concurrent = collector.characteristics().contains(Collector.Characteristics.CONCURRENT);
-        var lock = new Object();
-        return (a, t) -> {
-            if (concurrent) {
-                collector.accumulator().accept(a, t);
+    /**
+     * Every input has its own result slot, written once by the completion of its stage. The writes are published by
+     * the decrement of the remaining count, so the thread seeing it reach zero can read all slots without locking.
+     * Starting inputs is serialized by the work-in-progress counter: a completion that can't enter the drain loop leaves
+     * the work to the thread inside it, which keeps synchronously completing stages from recursing.
+     */
+    private static class Traversal<T, R> {
+
+        private final Object[] inputs;
+        private final Object[] results;
+        private final Function<? super T, ? extends CompletionStage<R>> f;
+        private final boolean failFast;
+        private final Executor executor;
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+        private final AtomicInteger remaining;
+        private final AtomicInteger permits;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean failed = new AtomicBoolean();
+        // only accessed inside the drain loop
+        private int next;
+
+        Traversal(Collection<? extends T> inputs, Function<? super T, ? extends CompletionStage<R>> f, int maxInFlight, boolean failFast, Executor executor) {
+            this.inputs = inputs.toArray();
+            this.results = new Object[this.inputs.length];
+            this.f = f;
+            this.failFast = failFast;
+            this.executor = executor;
+            this.remaining = new AtomicInteger(this.inputs.length);
+            this.permits = new AtomicInteger(Math.max(1, maxInFlight));
+        }
+
+        CompletableFuture<List<R>> run() {
+            if (inputs.length == 0) {
+                finish();
             } else {
-                synchronized (lock) {
-                    collector.accumulator().accept(a, t);
+                drain();
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (next < inputs.length && !failed.get() && permits.get() > 0) {
+                    permits.decrementAndGet();
+                    var index = next++;
+                    CompletionStage<R> stage;
+                    try {
+                        stage = f.apply((T) inputs[index]);
+                    } catch (RuntimeException e) {
+                        stage = CompletableFuture.failedFuture(e);
+                    }
+                    stage.whenComplete((r, th) -> onComplete(index, r, th));
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void onComplete(int index, R r, Throwable th) {
+            if (th != null) {
+                if (failFast) {
+                    if (failed.compareAndSet(false, true)) {
+                        executor.execute(() -> result.completeExceptionally(th));
+                    }
+                    return;
                 }
+                errors.add(th);
+            } else {
+                results[index] = r;
             }
-        };
+            if (remaining.decrementAndGet() == 0) {
+                finish();
+            } else {
+                permits.incrementAndGet();
+                drain();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void finish() {
+            if (failed.get()) {
+                return;
+            }
+            if (errors.isEmpty()) {
+                var list = (List<R>) Arrays.asList(results);
+                executor.execute(() -> result.complete(list));
+            } else {
+                var accumulated = new AccumulatedThrowable(List.copyOf(errors));
+                executor.execute(() -> result.completeExceptionally(accumulated));
+            }
+        }
     }
 
     @AllArgsConstructor
@@ -95,4 +200,4 @@ public class CompletableFutures {
             return "Accumulated messages: \n  " + accumulatedExceptions.stream().map(Throwable::getMessage).collect(Collectors.joining("\n  "));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package com.github.mvh77.ktc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Completes the futures bridged from the admin client, so everything chained on them runs on this executor instead
+ * of the network thread of the admin client. The number of completions waiting for a thread is tracked, its peak,
+ * the number of completions and their total wait are recorded in the run metrics for sizing a pool.
+ */
+class CompletionExecutor implements Executor {
+
+    static final String DIRECT = "direct";
+    static final String POOL = "pool";
+    static final String COMMON = "common";
+
+    private final Executor delegate;
+    // shut down on close, null if the executor belongs to someone else
+    private final ExecutorService owned;
+    private final RunMetrics metrics;
+    private final AtomicLong queued = new AtomicLong();
+
+    private CompletionExecutor(Executor delegate, ExecutorService owned, RunMetrics metrics) {
+        this.delegate = delegate;
+        this.owned = owned;
+        this.metrics = metrics;
+    }
+
+    // the executor named in the settings: the calling thread, a pool of its own or the common pool
+    static CompletionExecutor create(ClientSettings settings, RunMetrics metrics) {
+        switch (settings.getCompletionExecutor()) {
+            case DIRECT:
+                return new CompletionExecutor(Runnable::run, null, metrics);
+            case COMMON:
+                return new CompletionExecutor(ForkJoinPool.commonPool(), null, metrics);
+            case POOL:
+                var pool = Executors.newFixedThreadPool(Math.max(1, settings.getCompletionThreads()), daemonThreads());
+                return new CompletionExecutor(pool, pool, metrics);
+            default:
+                throw new IllegalArgumentException("unknown completion executor " + settings.getCompletionExecutor());
+        }
+    }
+
+    // an executor supplied by the caller, which stays open
+    static CompletionExecutor of(Executor executor, RunMetrics metrics) {
+        return new CompletionExecutor(executor, null, metrics);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        var enqueued = System.nanoTime();
+        metrics.peak("completion_queue_depth", queued.incrementAndGet());
+        Runnable measured = () -> {
+            queued.decrementAndGet();
+            metrics.count("completions", 1);
+            metrics.count("completion_wait_us", (System.nanoTime() - enqueued) / 1000);
+            task.run();
+        };
+        try {
+            delegate.execute(measured);
+        } catch (RejectedExecutionException e) {
+            // a response arriving after close still completes its future
+            measured.run();
+        }
+    }
+
+    void close() {
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        var count = new AtomicInteger();
+        return r -> {
+            var thread = new Thread(r, "ktc-completion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.common.config.ConfigResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the config operations of many topics at once, with the same outcome as {@link MapOps#toConfigOps}. Every
+ * topic is diffed in a single pass over its {@link ConfigProfile}, which is sorted by name, so the operations come out
+ * sorted by name. Topics are diffed in parallel on the common fork-join pool.
+ */
+class ConfigDiff {
+
+    static Map<ConfigResource, Collection<AlterConfigOp>> diff(Map<String, TopicState> current, Map<String, TopicDefinition> targetTopics) {
+        var topics = targetTopics.keySet().retainAll(current.keySet()).toJavaArray(String[]::new);
+        List<Tuple2<ConfigResource, Collection<AlterConfigOp>>> updates = IntStream.range(0, topics.length)
+                .parallel()
+                .mapToObj(i -> {
+                    var ops = topic(current.apply(topics[i]).getConfigs(), targetTopics.apply(topics[i]).getConfig());
+                    return ops.isEmpty() ? null : Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, topics[i]), ops);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return HashMap.ofEntries(updates);
+    }
+
+    // configs missing from the current state are never changed, so only the current ones are visited
+    private static Collection<AlterConfigOp> topic(ConfigProfile current, java.util.Map<String, String> target) {
+        List<AlterConfigOp> ops = null;
+        for (int i = 0; i < current.size(); i++) {
+            AlterConfigOp op = null;
+            var name = current.name(i);
+            if (target.containsKey(name)) {
+                var value = target.get(name);
+                if (!Objects.equals(value, current.value(i))) {
+                    op = new AlterConfigOp(new ConfigEntry(name, value), AlterConfigOp.OpType.SET);
+                }
+            } else if (current.isOverride(i)) {
+                op = new AlterConfigOp(new ConfigEntry(name, null), AlterConfigOp.OpType.DELETE);
+            }
+            if (op != null) {
+                if (ops == null) ops = new ArrayList<>();
+                ops.add(op);
+            }
+        }
+        return ops == null ? List.of() : ops;
+    }
+}
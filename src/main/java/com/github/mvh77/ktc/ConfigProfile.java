@@ -0,0 +1,129 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.control.Option;
+import org.apache.kafka.clients.admin.ConfigEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The described configs of a topic, as parallel arrays sorted by name. Most topics share one of a few profiles, so
+ * profiles are interned: every topic with the same configs refers to the same instance, and names and values are
+ * shared between profiles.
+ */
+final class ConfigProfile {
+
+    private final String[] names;
+    private final String[] values;
+    // dynamically set at topic level, removing it from the definition resets it to the default
+    private final boolean[] overrides;
+    private final int hash;
+
+    private ConfigProfile(String[] names, String[] values, boolean[] overrides) {
+        this.names = names;
+        this.values = values;
+        this.overrides = overrides;
+        this.hash = 31 * (31 * Arrays.hashCode(names) + Arrays.hashCode(values)) + Arrays.hashCode(overrides);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int i) {
+        return names[i];
+    }
+
+    String value(int i) {
+        return values[i];
+    }
+
+    boolean isOverride(int i) {
+        return overrides[i];
+    }
+
+    boolean isOverride(String name) {
+        var i = Arrays.binarySearch(names, name);
+        return i >= 0 && overrides[i];
+    }
+
+    boolean contains(String name) {
+        return Arrays.binarySearch(names, name) >= 0;
+    }
+
+    // the value of the config, none if the topic doesn't have it. a present config may have a null value
+    Option<String> get(String name) {
+        var i = Arrays.binarySearch(names, name);
+        return i >= 0 ? Option.some(values[i]) : Option.none();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConfigProfile)) return false;
+        var other = (ConfigProfile) o;
+        return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(values, other.values) && Arrays.equals(overrides, other.overrides);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Hands out a single instance per distinct profile, and per distinct name, value and name array. Thread safe.
+     */
+    static class Interner {
+
+        private final ConcurrentHashMap<ConfigProfile, ConfigProfile> profiles = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<NameKey, String[]> nameArrays = new ConcurrentHashMap<>();
+
+        ConfigProfile intern(Iterable<ConfigEntry> entries) {
+            var sorted = new ArrayList<ConfigEntry>();
+            entries.forEach(sorted::add);
+            sorted.sort(Comparator.comparing(ConfigEntry::name));
+            var names = new String[sorted.size()];
+            var values = new String[sorted.size()];
+            var overrides = new boolean[sorted.size()];
+            for (int i = 0; i < names.length; i++) {
+                var ce = sorted.get(i);
+                names[i] = string(ce.name());
+                values[i] = ce.value() == null ? null : string(ce.value());
+                overrides[i] = !ce.isDefault() && ce.source() == ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG;
+            }
+            var sharedNames = nameArrays.computeIfAbsent(new NameKey(names), key -> key.names);
+            return profiles.computeIfAbsent(new ConfigProfile(sharedNames, values, overrides), profile -> profile);
+        }
+
+        int size() {
+            return profiles.size();
+        }
+
+        private String string(String s) {
+            return strings.computeIfAbsent(s, v -> v);
+        }
+    }
+
+    private static class NameKey {
+        final String[] names;
+        final int hash;
+
+        NameKey(String[] names) {
+            this.names = names;
+            this.hash = Arrays.hashCode(names);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NameKey && Arrays.equals(names, ((NameKey) o).names);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
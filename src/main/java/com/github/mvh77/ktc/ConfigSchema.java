@@ -0,0 +1,171 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Option;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.kafka.clients.admin.ConfigEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The names, types and ranges of the topic level configs of a Kafka version, to validate definitions without asking
+ * the brokers. The schema of Kafka 2.7 is bundled, the schema of a cluster can be fetched once and kept in a file.
+ */
+@Data
+@NoArgsConstructor
+public class ConfigSchema {
+
+    static final int VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private int version = VERSION;
+    // where the schema was taken from
+    private String source;
+    private java.util.Map<String, Key> configs = java.util.Map.of();
+
+    public static ConfigSchema builtIn() {
+        try (InputStream in = ConfigSchema.class.getResourceAsStream("/topic-config-schema.json")) {
+            return checked(MAPPER.readValue(in, ConfigSchema.class), "the bundled schema");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static ConfigSchema read(String path) {
+        try {
+            return checked(MAPPER.readValue(new File(path), ConfigSchema.class), path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void write(String path) {
+        try {
+            MAPPER.writeValue(new File(path), this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The schema of the configs a broker described. Brokers report names and types but not ranges, those are taken
+     * from the bundled schema for the configs it knows with the same type. Configs of a broker too old to report
+     * types accept any value, unless the bundled schema knows them.
+     */
+    static ConfigSchema fromBroker(Seq<ConfigEntry> entries, String source) {
+        var known = builtIn().getConfigs();
+        var schema = new ConfigSchema();
+        schema.setSource(source);
+        schema.setConfigs(entries.toSortedMap(ConfigEntry::name, entry -> key(entry, known.get(entry.name()))).toJavaMap());
+        return schema;
+    }
+
+    private static Key key(ConfigEntry entry, Key builtIn) {
+        if (builtIn != null && (entry.type() == ConfigEntry.ConfigType.UNKNOWN || entry.type() == builtIn.getType())) {
+            return builtIn;
+        }
+        return new Key(entry.type(), null, null, null);
+    }
+
+    // one message per unknown config or invalid value, in topic order
+    Seq<String> validate(Map<String, TopicDefinition> topics) {
+        return topics.toVector()
+                .sortBy(t2 -> t2._1)
+                .flatMap(t2 -> t2._2.getConfigMap().toVector().flatMap(config -> check(config._1, config._2).map(problem -> t2._1 + ": " + problem)));
+    }
+
+    private Option<String> check(String name, String value) {
+        var key = configs.get(name);
+        if (key == null) {
+            return Option.of("unknown config " + name);
+        }
+        return key.check(value).map(problem -> name + " " + problem);
+    }
+
+    private static ConfigSchema checked(ConfigSchema schema, String source) {
+        if (schema.getVersion() != VERSION) {
+            throw new IllegalArgumentException("unsupported schema version " + schema.getVersion() + " in " + source);
+        }
+        return schema;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Key {
+        private ConfigEntry.ConfigType type;
+        private Double min;
+        private Double max;
+        // allowed values, of every element for lists
+        private List<String> values;
+
+        // the problem with the value, if any
+        Option<String> check(String value) {
+            if (value == null) {
+                return Option.none();
+            }
+            switch (type) {
+                case BOOLEAN:
+                    return value.trim().equalsIgnoreCase("true") || value.trim().equalsIgnoreCase("false")
+                            ? Option.none()
+                            : Option.of("must be true or false, was " + value);
+                case SHORT:
+                    return number(value, Short.MIN_VALUE, Short.MAX_VALUE);
+                case INT:
+                    return number(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                case LONG:
+                    return number(value, Long.MIN_VALUE, Long.MAX_VALUE);
+                case DOUBLE:
+                    try {
+                        return inRange(Double.parseDouble(value.trim()), value);
+                    } catch (NumberFormatException e) {
+                        return Option.of("must be a number, was " + value);
+                    }
+                case LIST:
+                    return Vector.of(value.split(","))
+                            .map(String::trim)
+                            .filter(element -> !element.isEmpty())
+                            .map(this::allowed)
+                            .find(Option::isDefined)
+                            .flatMap(problem -> problem);
+                default:
+                    return allowed(value);
+            }
+        }
+
+        private Option<String> number(String value, long lowest, long highest) {
+            try {
+                var number = Long.parseLong(value.trim());
+                return number < lowest || number > highest ? Option.of("is out of range, was " + value) : inRange(number, value);
+            } catch (NumberFormatException e) {
+                return Option.of("must be a whole number, was " + value);
+            }
+        }
+
+        private Option<String> inRange(double number, String value) {
+            if (min != null && number < min || max != null && number > max) {
+                return Option.of("must be " + (max == null ? "at least " + format(min) : min == null ? "at most " + format(max) : "between " + format(min) + " and " + format(max)) + ", was " + value);
+            }
+            return Option.none();
+        }
+
+        private Option<String> allowed(String value) {
+            return values == null || values.contains(value) ? Option.none() : Option.of("must be one of " + String.join(", ", values) + ", was " + value);
+        }
+
+        private static String format(double bound) {
+            return bound == Math.rint(bound) ? String.valueOf((long) bound) : String.valueOf(bound);
+        }
+    }
+}
@@ -1,106 +1,359 @@
 package com.github.mvh77.ktc;
 
 import io.vavr.Tuple;
+import io.vavr.Tuple2;
 import io.vavr.collection.HashMap;
 import io.vavr.collection.HashSet;
 import io.vavr.collection.Map;
 import io.vavr.collection.Seq;
 import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+import org.apache.kafka.clients.admin.Admin;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.AlterConfigOp;
 import org.apache.kafka.clients.admin.AlterConfigsOptions;
-import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.CreatePartitionsOptions;
 import org.apache.kafka.clients.admin.CreateTopicsOptions;
+import org.apache.kafka.clients.admin.DeleteTopicsOptions;
+import org.apache.kafka.clients.admin.NewPartitionReassignment;
 import org.apache.kafka.clients.admin.NewPartitions;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.ThrottlingQuotaExceededException;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class CustomAdminClient {
 
     private static final String KAFKA_CONFIG_PREFIX = "KAFKA_CFG_";
-    private final AdminClient adminClient;
+    private final Admin adminClient;
+    private final ClientSettings settings;
+    private final RunMetrics metrics;
+    private final RateLimiter limiter;
+    private final CompletionExecutor completions;
 
     CustomAdminClient(String bootstrap, String extraProperties) {
-        var properties = readProperties(extraProperties);
-        properties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
-        properties.put(AdminClientConfig.RETRIES_CONFIG, 5);
-        this.adminClient = AdminClient.create(properties);
+        this(bootstrap, extraProperties, new ClientSettings(), new RunMetrics());
+    }
+
+    CustomAdminClient(String bootstrap, String extraProperties, ClientSettings settings, RunMetrics metrics) {
+        this(AdminClient.create(properties(bootstrap, extraProperties)), settings, metrics);
+    }
+
+    CustomAdminClient(Admin adminClient, ClientSettings settings, RunMetrics metrics) {
+        this(adminClient, settings, metrics, CompletionExecutor.create(settings, metrics));
+    }
+
+    // the futures of the admin client are completed on the executor, which is left open on close
+    CustomAdminClient(Admin adminClient, ClientSettings settings, RunMetrics metrics, Executor executor) {
+        this(adminClient, settings, metrics, CompletionExecutor.of(executor, metrics));
+    }
+
+    private CustomAdminClient(Admin adminClient, ClientSettings settings, RunMetrics metrics, CompletionExecutor completions) {
+        this.adminClient = adminClient;
+        this.settings = settings;
+        this.metrics = metrics;
+        this.limiter = new RateLimiter(settings.getMutationRatePerSecond());
+        this.completions = completions;
+    }
+
+    // creates the client of a run, tests and benchmarks hand out clients of an in-process cluster instead
+    interface Factory {
+        CustomAdminClient create(String bootstrap, String extraProperties, ClientSettings settings, RunMetrics metrics);
     }
 
     void close() {
         adminClient.close();
+        completions.close();
     }
 
-    CompletableFuture<HashMap<TopicDescription, Set<ConfigEntry>>> getTotalDescription() {
-        return getTopicDescriptions()
-                .thenCompose(tds -> {
-                    var futures = tds
-                            .map(td -> getConfigEntries(td.name()).thenApply(s -> Tuple.of(td, s)))
-                            .toJavaList();
-                    return CompletableFutures
-                            .combined(futures, HashMap.collector());
-                });
+    // only topics accepted by the scope are described
+    CompletableFuture<HashMap<String, TopicState>> getTotalDescription(Predicate<String> scope) {
+        return getTopicNames(scope).thenCompose(this::describe);
+    }
+
+    // the topics accepted by the scope, without internal topics
+    CompletableFuture<Set<String>> getTopicNames(Predicate<String> scope) {
+        return topics().thenApply(topics -> topics.filter(scope));
+    }
+
+    // descriptions and configs are reduced to topic states as they arrive, identical config sets are shared between topics
+    CompletableFuture<HashMap<String, TopicState>> describe(Set<String> topics) {
+        var interner = new ConfigProfile.Interner();
+        return getTopicDescriptions(topics)
+                .thenCompose(sizes -> getConfigProfiles(sizes.keySet(), interner)
+                        .thenApply(profiles -> {
+                            metrics.count("config_profiles", interner.size());
+                            return profiles.map((topic, profile) -> Tuple.of(topic, new TopicState(sizes.apply(topic)._1, sizes.apply(topic)._2, profile)));
+                        }));
+    }
+
+    // the topic config definitions of the brokers, read from the configs of any topic
+    CompletableFuture<ConfigSchema> getConfigSchema(String source) {
+        return topics().thenCompose(topics -> {
+            if (topics.isEmpty()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("no topic to read the config definitions from"));
+            }
+            var resource = new ConfigResource(ConfigResource.Type.TOPIC, topics.min().get());
+            return toCompletableFuture(timed("describeConfigs", adminClient.describeConfigs(java.util.List.of(resource)).all()))
+                    .thenApply(configs -> ConfigSchema.fromBroker(Vector.ofAll(configs.get(resource).entries()), source));
+        });
+    }
+
+    // completed gets the outcomes of every chunk as it completes
+    CompletableFuture<Map<String, Try<Void>>> doCreateTopics(Seq<NewTopic> newTopics, boolean dryRun, Consumer<Map<String, Try<Void>>> completed) {
+        // validateOnly creations don't count against the controller mutation quota
+        return applyInChunks(newTopics, NewTopic::name, !dryRun, completed, (chunk, timeoutMs) -> {
+            var options = new CreateTopicsOptions().validateOnly(dryRun).timeoutMs(timeoutMs).retryOnQuotaViolation(false);
+            var result = adminClient.createTopics(chunk.asJava(), options);
+            timed("createTopics", result.all());
+            return HashMap.ofAll(result.values());
+        });
+    }
+
+    CompletableFuture<Map<String, Try<Void>>> doUpdateTopics(Map<ConfigResource, Collection<AlterConfigOp>> mods, boolean dryRun, Consumer<Map<String, Try<Void>>> completed) {
+        // config changes aren't covered by the controller mutation quota, they aren't rate limited
+        return applyInChunks(mods.toVector(), t2 -> t2._1.name(), false, completed, (chunk, timeoutMs) -> {
+            var options = new AlterConfigsOptions().validateOnly(dryRun).timeoutMs(timeoutMs);
+            var result = adminClient.incrementalAlterConfigs(chunk.toJavaMap(Function.identity()), options);
+            timed("incrementalAlterConfigs", result.all());
+            return HashMap.ofAll(result.values()).mapKeys(ConfigResource::name);
+        });
+    }
+
+    CompletableFuture<Map<String, Try<Void>>> doUpdatePartitionCount(Map<String, Integer> topicToNewPartitionCount) {
+        return mutate(topicToNewPartitionCount.toVector(), Tuple2::_1, (topics, timeoutMs) -> {
+            var options = new CreatePartitionsOptions().timeoutMs(timeoutMs).retryOnQuotaViolation(false);
+            var result = adminClient.createPartitions(HashMap.ofEntries(topics).mapValues(NewPartitions::increaseTo).toJavaMap(), options);
+            timed("createPartitions", result.all());
+            return HashMap.ofAll(result.values());
+        }, true, 0);
+    }
+
+    CompletableFuture<Map<String, Try<Void>>> doDeleteTopics(Set<String> deletedTopics) {
+        return mutate(deletedTopics.toVector(), Function.identity(), (topics, timeoutMs) -> {
+            var options = new DeleteTopicsOptions().timeoutMs(timeoutMs).retryOnQuotaViolation(false);
+            var result = adminClient.deleteTopics(topics.asJava(), options);
+            timed("deleteTopics", result.all());
+            return HashMap.ofAll(result.values());
+        }, true, 0);
     }
 
-    CompletableFuture<Void> doCreateTopics(Seq<NewTopic> newTopics, boolean dryRun) {
-        return toCompletableFuture(adminClient.createTopics(newTopics.asJava(), new CreateTopicsOptions().validateOnly(dryRun)).all());
+    ClientSettings settings() {
+        return settings;
     }
 
-    CompletableFuture<Void> doUpdateTopics(Map<ConfigResource, Collection<AlterConfigOp>> mods, boolean dryRun) {
-        return toCompletableFuture(adminClient.incrementalAlterConfigs(mods.toJavaMap(), new AlterConfigsOptions().validateOnly(dryRun)).all());
+    // the partition count of every topic that could be described
+    CompletableFuture<Map<String, Integer>> getPartitionCounts(Set<String> topics) {
+        var result = adminClient.describeTopics(topics.toJavaSet());
+        timed("describeTopics", result.all());
+        var futures = HashMap.ofAll(result.values())
+                .map((topic, future) -> Tuple.of(topic, toCompletableFuture(future)
+                        .handle((td, th) -> th == null ? Vector.of(Tuple.of(topic, td.partitions().size())) : Vector.<Tuple2<String, Integer>>empty())))
+                .values()
+                .toJavaList();
+        return CompletableFutures.sequence(futures, Vector.collector())
+                .thenApply(found -> HashMap.ofEntries(found.flatMap(Function.identity())));
     }
 
-    CompletableFuture<Void> doUpdatePartitionCount(Map<String, Integer> topicToNewPartitionCount) {
-        return toCompletableFuture(adminClient.createPartitions(topicToNewPartitionCount.mapValues(NewPartitions::increaseTo).toJavaMap()).all());
+    // the topics that still exist, internal ones included
+    CompletableFuture<Set<String>> getExistingTopics(Set<String> topics) {
+        return toCompletableFuture(timed("listTopics", adminClient.listTopics().names()))
+                .thenApply(names -> topics.filter(names::contains));
     }
 
-    CompletableFuture<Void> doDeleteTopics(Set<String> deletedTopics) {
-        return toCompletableFuture(adminClient.deleteTopics(deletedTopics.toJavaSet()).all());
+    // ids of the brokers in the cluster
+    CompletableFuture<Seq<Integer>> getBrokers() {
+        return toCompletableFuture(timed("describeCluster", adminClient.describeCluster().nodes()))
+                .thenApply(nodes -> Vector.ofAll(nodes).map(Node::id).sorted());
+    }
+
+    // the replicas of every partition of the topics, preferred leader first
+    CompletableFuture<HashMap<TopicPartition, Seq<Integer>>> getReplicaAssignments(Set<String> topics) {
+        return toCompletableFuture(timed("describeTopics", adminClient.describeTopics(topics.toJavaSet()).all()))
+                .thenApply(descriptions -> HashMap.ofEntries(Vector.ofAll(descriptions.values())
+                        .flatMap(td -> Vector.ofAll(td.partitions())
+                                .map(p -> Tuple.of(new TopicPartition(td.name(), p.partition()), (Seq<Integer>) Vector.ofAll(p.replicas()).map(Node::id))))));
+    }
+
+    CompletableFuture<Void> doAlterConfigs(Map<ConfigResource, Collection<AlterConfigOp>> ops) {
+        if (ops.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return toCompletableFuture(timed("incrementalAlterConfigs", adminClient.incrementalAlterConfigs(ops.toJavaMap(Function.identity())).all()));
+    }
+
+    CompletableFuture<Void> doReassignPartitions(Map<TopicPartition, Seq<Integer>> assignments) {
+        var reassignments = assignments.mapValues(replicas -> Optional.of(new NewPartitionReassignment(replicas.asJava())));
+        return toCompletableFuture(timed("alterPartitionReassignments", adminClient.alterPartitionReassignments(reassignments.toJavaMap()).all()));
+    }
+
+    // the partitions go back to the replicas they had before the reassignment
+    CompletableFuture<Void> doCancelReassignments(Set<TopicPartition> partitions) {
+        var cancellations = partitions.toMap(tp -> Tuple.of(tp, Optional.<NewPartitionReassignment>empty()));
+        return toCompletableFuture(timed("alterPartitionReassignments", adminClient.alterPartitionReassignments(cancellations.toJavaMap()).all()));
+    }
+
+    // the partitions among the given ones which are still being reassigned
+    CompletableFuture<Set<TopicPartition>> getOngoingReassignments(Set<TopicPartition> partitions) {
+        return toCompletableFuture(timed("listPartitionReassignments", adminClient.listPartitionReassignments(partitions.toJavaSet()).reassignments()))
+                .thenApply(ongoing -> HashSet.ofAll(ongoing.keySet()));
     }
 
     // ------------------------------------------------------------------------
 
-    private CompletableFuture<Set<ConfigEntry>> getConfigEntries(String topic) {
-        return toCompletableFuture(adminClient.describeConfigs(List.of(new ConfigResource(ConfigResource.Type.TOPIC, topic))).all())
-                .thenApply(map -> map.values().stream().flatMap(c -> c.entries().stream()))
-                .thenApply(HashSet::ofAll);
+    // sends the operations in chunks of applyChunkSize, with at most applyMaxInFlight chunks pending at once.
+    // the deadline of each chunk grows with its size, the outcome is reported per topic.
+    private <T> CompletableFuture<Map<String, Try<Void>>> applyInChunks(Seq<T> ops, Function<T, String> topic, boolean limited, Consumer<Map<String, Try<Void>>> completed,
+                                                                        BiFunction<Seq<T>, Integer, Map<String, KafkaFuture<Void>>> send) {
+        var chunks = ops.grouped(Math.max(1, settings.getApplyChunkSize())).toVector();
+        return CompletableFutures.traverse(chunks.asJava(), chunk -> mutate(chunk, topic, send, limited, 0).whenComplete((results, th) -> {
+                    if (results != null) completed.accept(results);
+                }), settings.getApplyMaxInFlight())
+                .thenApply(results -> Vector.ofAll(results).<Map<String, Try<Void>>>foldLeft(HashMap.empty(), Map::merge));
+    }
+
+    // sends the operations, once the rate limiter allows a mutation per topic when limited. topics rejected by the
+    // controller mutation quota are sent again after the throttle time, at most mutationQuotaRetries times, the other
+    // outcomes are final.
+    private <T> CompletableFuture<Map<String, Try<Void>>> mutate(Seq<T> ops, Function<T, String> topic, BiFunction<Seq<T>, Integer, Map<String, KafkaFuture<Void>>> send,
+                                                                 boolean limited, int attempt) {
+        var timeoutMs = settings.applyTimeoutMs(ops.size());
+        return (limited ? limiter.acquire(ops.size()) : CompletableFuture.<Void>completedFuture(null))
+                .thenCompose(nil -> {
+                    var futures = send.apply(ops, timeoutMs)
+                            .map((name, future) -> Tuple.of(name, toCompletableFuture(future)
+                                    .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                                    .handle((n, th) -> toTry(th, timeoutMs))
+                                    .thenApply(result -> Tuple.of(name, result))))
+                            .values()
+                            .toJavaList();
+                    return CompletableFutures.sequence(futures, HashMap.<String, Try<Void>>collector());
+                })
+                .thenCompose(results -> {
+                    var throttleTimes = results.values()
+                            .filter(result -> result.isFailure() && result.getCause() instanceof ThrottlingQuotaExceededException)
+                            .map(result -> ((ThrottlingQuotaExceededException) result.getCause()).throttleTimeMs());
+                    if (throttleTimes.isEmpty()) {
+                        if (limited) {
+                            limiter.succeeded();
+                        }
+                        return CompletableFuture.<Map<String, Try<Void>>>completedFuture(results);
+                    }
+                    metrics.count("quota_throttled", throttleTimes.size());
+                    limiter.throttled(throttleTimes.max().get(), System.nanoTime());
+                    if (attempt >= settings.getMutationQuotaRetries()) {
+                        return CompletableFuture.<Map<String, Try<Void>>>completedFuture(results);
+                    }
+                    var throttled = ops.filter(op -> {
+                        var result = results.apply(topic.apply(op));
+                        return result.isFailure() && result.getCause() instanceof ThrottlingQuotaExceededException;
+                    });
+                    return mutate(throttled, topic, send, limited, attempt + 1)
+                            .thenApply(retried -> results.merge(retried, (first, last) -> last));
+                });
+    }
+
+    private static Try<Void> toTry(Throwable th, int timeoutMs) {
+        if (th == null) return Try.success(null);
+        else if (th instanceof TimeoutException) return Try.failure(new TimeoutException("no response within " + timeoutMs + " ms"));
+        else return Try.failure(th);
+    }
+
+    // describes the topics in batches of describeBatchSize, with at most describeMaxInFlight batches pending at once
+    private CompletableFuture<HashMap<String, ConfigProfile>> getConfigProfiles(Set<String> topics, ConfigProfile.Interner interner) {
+        var pending = topics.toMap(topic -> Tuple.of(topic, new CompletableFuture<ConfigProfile>()));
+        var batches = topics.toVector().sorted().grouped(Math.max(1, settings.getDescribeBatchSize())).toVector();
+        var described = CompletableFutures.traverse(batches.asJava(), batch -> describeConfigBatch(batch, pending, interner), settings.getDescribeMaxInFlight());
+        var futures = pending
+                .map(t2 -> t2._2.thenApply(entries -> Tuple.of(t2._1, entries)))
+                .toJavaList();
+        var profiles = CompletableFutures.combined(futures, HashMap.collector());
+        // a batch failing before it completed its topics stops the traversal, the topics of the batches not started
+        // yet would never complete
+        return described.thenCompose(nil -> profiles);
+    }
+
+    // completes the pending future of every topic in the batch, the returned future completes once all of them are done
+    private CompletableFuture<Void> describeConfigBatch(Seq<String> batch, Map<String, CompletableFuture<ConfigProfile>> pending, ConfigProfile.Interner interner) {
+        var resources = batch.map(topic -> new ConfigResource(ConfigResource.Type.TOPIC, topic));
+        var result = adminClient.describeConfigs(resources.asJava());
+        timed("describeConfigs", result.all());
+        var values = result.values();
+        var futures = resources
+                .map(resource -> toCompletableFuture(values.get(resource))
+                        .thenApply(config -> interner.intern(config.entries()))
+                        .whenComplete((entries, th) -> {
+                            var topicFuture = pending.apply(resource.name());
+                            if (th != null) topicFuture.completeExceptionally(th);
+                            else topicFuture.complete(entries);
+                        }))
+                .toJavaList();
+        return CompletableFutures.combined(futures, Vector.collector()).handle((profiles, th) -> null);
+    }
+
+    // topic -> (partition count, replication factor)
+    private CompletableFuture<HashMap<String, Tuple2<Integer, Integer>>> getTopicDescriptions(Set<String> topics) {
+        return toCompletableFuture(timed("describeTopics", adminClient.describeTopics(topics.toJavaSet()).all()))
+                .thenApply(map -> HashMap.ofAll(map).mapValues(td -> Tuple.of(td.partitions().size(), replicationFactor(td))));
     }
 
-    private CompletableFuture<Set<TopicDescription>> getTopicDescriptions() {
-        return topics()
-                .thenCompose(topics -> toCompletableFuture(adminClient.describeTopics(topics.toJavaSet()).all()))
-                .thenApply(map -> HashSet.ofAll(map.values()));
+    private static int replicationFactor(TopicDescription td) {
+        return td.partitions().isEmpty() ? 0 : td.partitions().get(0).replicas().size();
     }
 
     private CompletableFuture<Set<String>> topics() {
-        return toCompletableFuture(adminClient.listTopics().names()
+        return toCompletableFuture(timed("listTopics", adminClient.listTopics().names())
                 .thenApply(HashSet::ofAll)
                 .thenApply(hs -> hs.filter(name -> !name.startsWith("_"))));
 
     }
 
+    // records the latency and outcome of the request in the run metrics
+    private <T> KafkaFuture<T> timed(String api, KafkaFuture<T> future) {
+        var start = System.nanoTime();
+        future.whenComplete((t, th) -> metrics.request(api, System.nanoTime() - start, th == null));
+        return future;
+    }
+
+    // completed on the completion executor, so what is chained on it doesn't hold up the network thread
     private <T> CompletableFuture<T> toCompletableFuture(KafkaFuture<T> future) {
         CompletableFuture<T> ret = new CompletableFuture<>();
-        future.whenComplete((t, throwable) -> {
+        future.whenComplete((t, throwable) -> completions.execute(() -> {
             if (throwable != null) ret.completeExceptionally(throwable);
-            else ret.completeAsync(() -> t);
-        });
+            else ret.complete(t);
+        }));
         return ret;
     }
 
-    private Properties readProperties(String filenames) {
+    private static Properties properties(String bootstrap, String extraProperties) {
+        var properties = readProperties(extraProperties);
+        properties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        properties.put(AdminClientConfig.RETRIES_CONFIG, 5);
+        return properties;
+    }
+
+    private static Properties readProperties(String filenames) {
         var properties = new Properties();
         if (filenames != null && !filenames.isBlank()) {
             Stream.of(filenames.split(",")).forEach(file -> properties.putAll(readFile(file)));
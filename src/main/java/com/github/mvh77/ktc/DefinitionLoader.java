@@ -0,0 +1,257 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import io.vavr.control.Either;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads topic definition files in parallel. Every file is read as a stream of YAML events, topic definitions are
+ * merged into a single map as soon as they are read. A topic defined in more than one file is an error. Only one topic
+ * entry is held at a time, along with the anchored values it may refer to: aliases and merge keys (<<) resolve against
+ * the anchors seen earlier in the file.
+ */
+class DefinitionLoader {
+
+    private final ConcurrentHashMap<String, Tuple2<String, TopicDefinition>> topics = new ConcurrentHashMap<>();
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    // the topic definitions or the errors encountered while reading them
+    static Either<Seq<String>, HashMap<String, TopicDefinition>> load(Seq<String> files) {
+        return new DefinitionLoader().loadAll(files);
+    }
+
+    private Either<Seq<String>, HashMap<String, TopicDefinition>> loadAll(Seq<String> files) {
+        var futures = files
+                .map(file -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return loadFile(file);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }))
+                .toJavaList();
+        return CompletableFutures.combined(futures, Vector.collector())
+                .handle((counts, th) -> {
+                    if (th == null) {
+                        return Either.<Seq<String>, HashMap<String, TopicDefinition>>right(HashMap.ofAll(topics).mapValues(Tuple2::_2));
+                    } else if (th instanceof CompletableFutures.AccumulatedThrowable) {
+                        return Either.<Seq<String>, HashMap<String, TopicDefinition>>left(Vector.ofAll(((CompletableFutures.AccumulatedThrowable) th).getAccumulatedExceptions())
+                                .map(DefinitionLoader::unwrap)
+                                .map(Throwable::getMessage));
+                    } else {
+                        return Either.<Seq<String>, HashMap<String, TopicDefinition>>left(Vector.of(unwrap(th).getMessage()));
+                    }
+                })
+                .join();
+    }
+
+    private int loadFile(String file) {
+        try (var reader = Files.newBufferedReader(Path.of(file))) {
+            var events = new Yaml().parse(reader).iterator();
+            var count = 0;
+            var anchors = new java.util.HashMap<String, Object>();
+            expect(events, Event.ID.StreamStart, file);
+            var event = events.next();
+            if (event.is(Event.ID.StreamEnd)) {
+                return count; // empty file
+            }
+            expect(event, Event.ID.DocumentStart, file);
+            event = events.next();
+            if (isNull(event)) {
+                return count; // empty document
+            }
+            expect(event, Event.ID.MappingStart, file);
+            while (!(event = events.next()).is(Event.ID.MappingEnd)) {
+                var key = scalar(event, file);
+                if (!key.equals("topics")) {
+                    throw new IllegalArgumentException(error(file, event, "unknown property " + key));
+                }
+                event = events.next();
+                if (isNull(event)) {
+                    continue;
+                }
+                expect(event, Event.ID.MappingStart, file);
+                while (!(event = events.next()).is(Event.ID.MappingEnd)) {
+                    if (failed.get()) {
+                        return count; // another file failed, no need to go on
+                    }
+                    var topic = scalar(event, file);
+                    var definition = readTopic(compose(events.next(), events, anchors, file), topic, file, event);
+                    var previous = topics.putIfAbsent(topic, Tuple.of(file, definition));
+                    if (previous != null) {
+                        throw new DuplicateTopicException("topic " + topic + " is defined in both " + previous._1 + " and " + file);
+                    }
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not read configuration file " + file, e);
+        } catch (DuplicateTopicException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("could not parse configuration file " + file + " with exception " + e, e);
+        }
+    }
+
+    private TopicDefinition readTopic(Object value, String topic, String file, Event at) {
+        var definition = new TopicDefinition();
+        if (value == null) {
+            return definition;
+        }
+        for (var property : mapping(value, "topic " + topic, file, at).entrySet()) {
+            var key = (String) property.getKey();
+            switch (key) {
+                case "partitions":
+                    definition.setPartitions(Integer.parseInt(scalar(property.getValue(), "partitions of topic " + topic, file, at)));
+                    break;
+                case "replication":
+                    definition.setReplication(Integer.parseInt(scalar(property.getValue(), "replication of topic " + topic, file, at)));
+                    break;
+                case "config":
+                    definition.setConfig(readConfig(property.getValue(), topic, file, at));
+                    break;
+                default:
+                    throw new IllegalArgumentException(error(file, at, "unknown property " + key + " for topic " + topic));
+            }
+        }
+        return definition;
+    }
+
+    private java.util.Map<String, String> readConfig(Object value, String topic, String file, Event at) {
+        var config = new java.util.HashMap<String, String>();
+        if (value == null) {
+            return config;
+        }
+        for (var entry : mapping(value, "config of topic " + topic, file, at).entrySet()) {
+            var key = (String) entry.getKey();
+            config.put(key, entry.getValue() == null ? null : scalar(entry.getValue(), key + " of topic " + topic, file, at));
+        }
+        return config;
+    }
+
+    /**
+     * The value starting with the event as strings, lists and maps, null for a null scalar. Aliases are replaced by
+     * the value of their anchor, and the mappings under a merge key are added to the mapping without overriding its
+     * own keys.
+     */
+    private static Object compose(Event event, Iterator<Event> events, java.util.Map<String, Object> anchors, String file) {
+        if (event.is(Event.ID.Alias)) {
+            var anchor = ((AliasEvent) event).getAnchor();
+            if (!anchors.containsKey(anchor)) {
+                throw new IllegalArgumentException(error(file, event, "unknown alias " + anchor));
+            }
+            return anchors.get(anchor);
+        }
+        Object value;
+        if (event.is(Event.ID.Scalar)) {
+            value = isNull(event) ? null : ((ScalarEvent) event).getValue();
+        } else if (event.is(Event.ID.SequenceStart)) {
+            var list = new ArrayList<>();
+            Event next;
+            while (!(next = events.next()).is(Event.ID.SequenceEnd)) {
+                list.add(compose(next, events, anchors, file));
+            }
+            value = list;
+        } else if (event.is(Event.ID.MappingStart)) {
+            var map = new LinkedHashMap<String, Object>();
+            var merged = new ArrayList<java.util.Map<?, ?>>();
+            Event next;
+            while (!(next = events.next()).is(Event.ID.MappingEnd)) {
+                var key = scalar(next, file);
+                var entry = compose(events.next(), events, anchors, file);
+                if (key.equals("<<") && ((ScalarEvent) next).isPlain()) {
+                    // a mapping or a list of mappings, the first ones take precedence
+                    for (var source : entry instanceof List ? (List<?>) entry : Collections.singletonList(entry)) {
+                        merged.add(mapping(source, "merge key", file, next));
+                    }
+                } else {
+                    map.put(key, entry);
+                }
+            }
+            merged.forEach(source -> source.forEach((key, entry) -> map.putIfAbsent((String) key, entry)));
+            value = map;
+        } else {
+            throw new IllegalArgumentException(error(file, event, "unexpected " + event.getEventId()));
+        }
+        var anchor = ((NodeEvent) event).getAnchor();
+        if (anchor != null) {
+            anchors.put(anchor, value);
+        }
+        return value;
+    }
+
+    private static java.util.Map<?, ?> mapping(Object value, String what, String file, Event at) {
+        if (!(value instanceof java.util.Map)) {
+            throw new IllegalArgumentException(error(file, at, "expected a mapping for " + what));
+        }
+        return (java.util.Map<?, ?>) value;
+    }
+
+    private static String scalar(Object value, String what, String file, Event at) {
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(error(file, at, "expected a scalar for " + what));
+        }
+        return (String) value;
+    }
+
+    private static String scalar(Event event, String file) {
+        expect(event, Event.ID.Scalar, file);
+        return ((ScalarEvent) event).getValue();
+    }
+
+    private static boolean isNull(Event event) {
+        if (!event.is(Event.ID.Scalar)) return false;
+        var scalar = (ScalarEvent) event;
+        return scalar.isPlain() && (scalar.getValue().isEmpty() || scalar.getValue().equals("~") || scalar.getValue().equalsIgnoreCase("null"));
+    }
+
+    private static void expect(Iterator<Event> events, Event.ID id, String file) {
+        expect(events.next(), id, file);
+    }
+
+    private static void expect(Event event, Event.ID id, String file) {
+        if (!event.is(id)) {
+            throw new IllegalArgumentException(error(file, event, "expected " + id + " but found " + event.getEventId()));
+        }
+    }
+
+    private static String error(String file, Event event, String message) {
+        return message + " at " + file + ":" + (event.getStartMark().getLine() + 1);
+    }
+
+    private static Throwable unwrap(Throwable th) {
+        return th instanceof CompletionException && th.getCause() != null ? th.getCause() : th;
+    }
+
+    private static class DuplicateTopicException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        DuplicateTopicException(String message) {
+            super(message);
+        }
+    }
+}
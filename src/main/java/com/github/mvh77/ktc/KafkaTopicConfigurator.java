@@ -1,11 +1,9 @@
 package com.github.mvh77.ktc;
 
-import com.github.javactic.Accumulation;
-import com.github.javactic.One;
-import com.github.javactic.Or;
 import io.vavr.Tuple;
 import io.vavr.Tuple2;
 import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
 import io.vavr.collection.Map;
 import io.vavr.collection.Seq;
 import io.vavr.collection.Set;
@@ -13,179 +11,534 @@ import io.vavr.collection.Vector;
 import io.vavr.control.Option;
 import io.vavr.control.Try;
 import org.apache.kafka.clients.admin.AlterConfigOp;
-import org.apache.kafka.clients.admin.ConfigEntry;
 import org.apache.kafka.clients.admin.NewTopic;
-import org.apache.kafka.clients.admin.TopicDescription;
 import org.apache.kafka.common.config.ConfigResource;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.constructor.Constructor;
+import org.apache.kafka.common.errors.RetriableException;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class KafkaTopicConfigurator {
 
-    public void execute(String bootstrap, String definitions, String extraProperties, boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount) {
-        CustomAdminClient client = new CustomAdminClient(bootstrap, extraProperties);
-        client.getTotalDescription()
-                .whenComplete((topics, error) -> {
-                    if (topics != null) {
-                        printCurrentTopicInfo(topics);
-                        Map<String, TopicDefinition> targetTopics = parseInput(definitions, noReplication);
-                        var currentTopics = topics.mapKeys(TopicDescription::name);
-                        var newTopics = getTopicsToCreate(currentTopics, targetTopics);
-                        createTopics(client, newTopics, dryRun);
-                        var updatedTopics = getTopicsToUpdate(currentTopics, targetTopics);
-                        updateTopics(client, updatedTopics, dryRun);
-                        var updatedTopicCounts = getPartitionCountsToUpdate(topics.keySet(), targetTopics);
-                        updateTopicCount(client, updatedTopicCounts, dryRun, incrementPartitionCount);
-                        var deletedTopics = currentTopics.keySet().removeAll(targetTopics.keySet());
-                        deleteTopics(client, deletedTopics, dryRun, removeTopics);
-                    }
-                    if (error != null) {
-                        errorPrintln("Error retrieving currently configured topics with", error);
-                    }
-                    client.close();
-                })
-                .join();
-    }
-
-    private Map<String, TopicDefinition> parseInput(String definitions, boolean noReplication) {
-        String[] filesArray = definitions.split(",");
-        Vector<String> files = Vector.of(filesArray).filter(s -> !s.isEmpty());
-        Yaml yaml = new Yaml(new Constructor(FileTopics.class));
-        Vector<Or<FileTopics, One<String>>> projectTopics = files
-                .map(file ->
-                        Or.from(Try.of(() -> {
-                            InputStream is = new FileInputStream(file);
-                            return yaml.<FileTopics>load(is);
-                        })).badMap(th -> "could not parse configuration file " + file + " with exception " + th).accumulating());
-        HashMap<String, TopicDefinition> result = Accumulation
-                .combined(projectTopics)
-                .forBad(ths -> ths.forEach(this::errorPrintln))
-                .getOrElse(Vector.empty())
-                .foldLeft(HashMap.empty(), (map, fileTopics) -> map.merge(HashMap.ofAll(fileTopics.getTopics())));
-        if (noReplication) {
-            result.forEach((k, v) -> v.setReplication(1));
+    private final RunMetrics metrics;
+    private final Report report;
+    private final CustomAdminClient.Factory clients;
+    // set by any error of the current run
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    public KafkaTopicConfigurator() {
+        this(new RunMetrics(), Report.create("text", Report.Verbosity.FULL));
+    }
+
+    KafkaTopicConfigurator(RunMetrics metrics, Report report) {
+        this(metrics, report, CustomAdminClient::new);
+    }
+
+    KafkaTopicConfigurator(RunMetrics metrics, Report report, CustomAdminClient.Factory clients) {
+        this.metrics = metrics;
+        this.report = report;
+        this.clients = clients;
+    }
+
+    /**
+     * Reconciles the cluster with the definitions, when planFile is given the changes are written to it instead of
+     * being applied. When journalFile is given the applied changes are recorded in it, see {@link #resume}. Returns
+     * false if anything failed.
+     */
+    public boolean execute(String bootstrap, String definitions, String extraProperties, ClientSettings settings, TopicScope scope, String planFile,
+                           String journalFile, boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount,
+                           boolean changeReplicationFactor) {
+        var parsed = parseDefinitions(definitions, noReplication);
+        return parsed.isDefined() && reconcile(bootstrap, extraProperties, settings, scope, parsed.get(), planFile, journalFile, dryRun, removeTopics,
+                incrementPartitionCount, changeReplicationFactor);
+    }
+
+    // the topic definitions, or nothing after reporting that they could not be read
+    Option<Map<String, TopicDefinition>> parseDefinitions(String definitions, boolean noReplication) {
+        var parseTimer = metrics.startPhase("parse");
+        var parsed = parseInput(definitions, noReplication);
+        parseTimer.stop();
+        if (parsed.isEmpty()) {
+            error("Not reconciling any topics, the definitions could not be read");
+        }
+        return parsed;
+    }
+
+    /**
+     * Checks the configs of the definitions against the schema without connecting to a cluster. Returns false if any
+     * definition is invalid.
+     */
+    public boolean validate(String definitions, ConfigSchema schema, boolean noReplication) {
+        failed.set(false);
+        var parsed = parseDefinitions(definitions, noReplication);
+        if (parsed.isDefined() && validDefinitions(schema, parsed.get())) {
+            report.info(parsed.get().size() + " topic definitions are valid for " + schema.getSource());
+        }
+        report.flush();
+        return !failed.get();
+    }
+
+    // reports every invalid config, returns false if there was any
+    private boolean validDefinitions(ConfigSchema schema, Map<String, TopicDefinition> definedTopics) {
+        var validateTimer = metrics.startPhase("validate");
+        var problems = schema.validate(definedTopics);
+        validateTimer.stop();
+        problems.forEach(this::error);
+        return problems.isEmpty();
+    }
+
+    /**
+     * Writes the topic config schema of the cluster to a file, for validating definitions without the cluster.
+     */
+    public boolean writeConfigSchema(String bootstrap, String extraProperties, ClientSettings settings, String path) {
+        failed.set(false);
+        CustomAdminClient client = clients.create(bootstrap, extraProperties, settings, metrics);
+        try {
+            var schema = client.getConfigSchema(bootstrap).join();
+            schema.write(path);
+            report.info("Schema of " + schema.getConfigs().size() + " topic configs written to " + path);
+        } catch (CompletionException e) {
+            error("Error reading the topic config definitions with", unwrap(e));
+        } finally {
+            report.flush();
+            client.close();
+        }
+        return !failed.get();
+    }
+
+    // reconciles the cluster with definitions that were already parsed
+    boolean reconcile(String bootstrap, String extraProperties, ClientSettings settings, TopicScope scope, Map<String, TopicDefinition> definedTopics,
+                      String planFile, String journalFile, boolean dryRun, boolean removeTopics, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        failed.set(false);
+        if (scope.isSharded()) {
+            // topics of the other shards are neither reported nor counted here, their workers take care of them
+            var all = definedTopics.size();
+            definedTopics = definedTopics.filterKeys(scope::inShard);
+            report.info("Shard " + scope.getShardIndex() + " of " + scope.getShardCount() + ": " + definedTopics.size() + " of " + all + " defined topics");
+        }
+        var inScope = scope.resolve(definedTopics.keySet());
+        Map<String, TopicDefinition> targetTopics = definedTopics.filterKeys(inScope);
+        report.outOfScope(definedTopics.keySet().removeAll(targetTopics.keySet()));
+        metrics.count("topics_defined", definedTopics.size());
+        metrics.count("topics_in_scope", targetTopics.size());
+        if (settings.getConfigSchema() != null && !validDefinitions(settings.getConfigSchema(), targetTopics)) {
+            report.flush();
+            return false;
+        }
+        CustomAdminClient client = clients.create(bootstrap, extraProperties, settings, metrics);
+        if (settings.getStreamChunkSize() > 0 && planFile == null && journalFile == null) {
+            try {
+                reconcileInChunks(client, inScope, targetTopics, settings.getStreamChunkSize(), dryRun, removeTopics, incrementPartitionCount, changeReplicationFactor);
+            } finally {
+                report.flush();
+                client.close();
+            }
+            return !failed.get();
+        }
+        try {
+            describe(client, inScope, "currently configured topics").forEach(topics -> {
+                metrics.count("topics_described", topics.size());
+                var printTimer = metrics.startPhase("print");
+                report.currentTopics(topics);
+                printTimer.stop();
+                var diffTimer = metrics.startPhase("diff");
+                var plan = createPlan(topics, targetTopics, removeTopics, incrementPartitionCount, changeReplicationFactor);
+                diffTimer.stop();
+                printPlan(plan);
+                if (planFile != null) {
+                    PlanFile.write(plan, planFile);
+                    report.info("Plan written to " + planFile);
+                } else {
+                    applyJournaled(client, plan, dryRun, settings.getConfigSchema() != null,
+                            journalFile == null || dryRun ? ApplyJournal.NONE : ApplyJournal.start(journalFile, plan), 0);
+                }
+            });
+        } finally {
+            report.flush();
+            client.close();
+        }
+        return !failed.get();
+    }
+
+    /**
+     * Reconciles chunkSize topics at a time: the topic names are listed once, then every chunk is described, diffed
+     * and applied before the next one is described, so memory is bounded by the chunk size rather than by the number
+     * of topics. New topics need no description and are created first, in chunks as well.
+     */
+    private void reconcileInChunks(CustomAdminClient client, Predicate<String> inScope, Map<String, TopicDefinition> targetTopics, int chunkSize,
+                                   boolean dryRun, boolean removeTopics, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        Set<String> names;
+        try {
+            names = client.getTopicNames(inScope).join();
+        } catch (CompletionException e) {
+            error("Error listing the topics with", unwrap(e));
+            return;
+        }
+        var newTopics = targetTopics.keySet().removeAll(names);
+        var creates = newTopics.toVector().sorted().grouped(chunkSize).toVector();
+        var existing = names.toVector().sorted().grouped(chunkSize).toVector();
+        report.info("Reconciling " + names.size() + " existing and " + newTopics.size() + " new topics in chunks of " + chunkSize);
+        creates.forEach(chunk -> {
+            var plan = createPlan(HashMap.empty(), definitionsOf(chunk, targetTopics), false, false, false);
+            printPlan(plan);
+            applyJournaled(client, plan, dryRun, client.settings().getConfigSchema() != null, ApplyJournal.NONE, 0);
+            report.flush();
+        });
+        existing.zipWithIndex().forEach(t2 -> {
+            var chunk = t2._1.toSet();
+            report.info("Chunk " + (t2._2 + 1) + " of " + existing.size() + ": " + t2._1.head() + " to " + t2._1.last());
+            var describeTimer = metrics.startPhase("describe");
+            HashMap<String, TopicState> topics;
+            try {
+                topics = client.describe(chunk).join();
+            } catch (CompletionException e) {
+                error("Error describing the topics from " + t2._1.head() + " to " + t2._1.last() + " with", unwrap(e));
+                return;
+            } finally {
+                describeTimer.stop();
+            }
+            metrics.count("topics_described", topics.size());
+            var printTimer = metrics.startPhase("print");
+            report.currentTopics(topics);
+            printTimer.stop();
+            var diffTimer = metrics.startPhase("diff");
+            var plan = createPlan(topics, definitionsOf(t2._1, targetTopics), removeTopics, incrementPartitionCount, changeReplicationFactor);
+            diffTimer.stop();
+            printPlan(plan);
+            applyJournaled(client, plan, dryRun, client.settings().getConfigSchema() != null, ApplyJournal.NONE, 0);
+            report.flush();
+        });
+    }
+
+    // looked up per topic of the chunk, filtering all the definitions for every chunk would be quadratic
+    private static Map<String, TopicDefinition> definitionsOf(Seq<String> chunk, Map<String, TopicDefinition> targetTopics) {
+        return HashMap.ofEntries(chunk.flatMap(topic -> targetTopics.get(topic).map(definition -> Tuple.of(topic, definition))));
+    }
+
+    /**
+     * Applies a plan written by {@link #execute}, provided the topics it touches haven't changed since.
+     */
+    public boolean executePlan(String bootstrap, String extraProperties, ClientSettings settings, String planFile, String journalFile, boolean dryRun) {
+        failed.set(false);
+        var plan = PlanFile.read(planFile);
+        printPlan(plan);
+        CustomAdminClient client = clients.create(bootstrap, extraProperties, settings, metrics);
+        try {
+            describe(client, plan.affectedTopics()::contains, "the topics affected by the plan").forEach(topics -> {
+                var stale = getStaleTopics(plan, topics);
+                if (stale.isEmpty()) {
+                    applyJournaled(client, plan, dryRun, false, journalFile == null || dryRun ? ApplyJournal.NONE : ApplyJournal.start(journalFile, plan), 0);
+                } else {
+                    error("Plan " + planFile + " is stale, not applying it");
+                    stale.forEach(reason -> error("  " + reason));
+                }
+            });
+        } finally {
+            report.flush();
+            client.close();
+        }
+        return !failed.get();
+    }
+
+    /**
+     * Applies the operations of a journaled run which didn't succeed. Only the topics still pending are described,
+     * operations which took effect without being recorded, like a create which timed out on the client, are dropped.
+     * Topics failing with a retriable error are retried with exponential backoff. The outcomes are appended to the
+     * journal, so a resumed run can be resumed again.
+     */
+    public boolean resume(String bootstrap, String extraProperties, ClientSettings settings, String journalFile, boolean dryRun) {
+        failed.set(false);
+        var journaled = ApplyJournal.pending(journalFile);
+        CustomAdminClient client = clients.create(bootstrap, extraProperties, settings, metrics);
+        try {
+            describe(client, journaled.affectedTopics()::contains, "the topics pending in the journal").forEach(topics -> {
+                var plan = notInEffect(journaled, topics);
+                report.info("Resuming " + journalFile + ": " + plan.affectedTopics().size() + " of " + journaled.affectedTopics().size()
+                        + " pending topics left");
+                printPlan(plan);
+                var stale = getStaleTopics(plan, topics);
+                if (stale.isEmpty()) {
+                    applyJournaled(client, plan, dryRun, false, dryRun ? ApplyJournal.NONE : ApplyJournal.resume(journalFile), settings.getResumeRetries());
+                } else {
+                    error("Journal " + journalFile + " is stale, not resuming it");
+                    stale.forEach(reason -> error("  " + reason));
+                }
+            });
+        } finally {
+            report.flush();
+            client.close();
+        }
+        return !failed.get();
+    }
+
+    // joined on the calling thread: the apply blocks on its phases, in a callback it would hold up the thread which
+    // completes the admin responses, the network thread or a completion thread
+    private Option<HashMap<String, TopicState>> describe(CustomAdminClient client, Predicate<String> scope, String what) {
+        var describeTimer = metrics.startPhase("describe");
+        try {
+            return Option.some(client.getTotalDescription(scope).join());
+        } catch (CompletionException e) {
+            error("Error retrieving " + what + " with", unwrap(e));
+            return Option.none();
+        } finally {
+            describeTimer.stop();
+        }
+    }
+
+    // the operations of the plan which haven't taken effect on the current topics
+    Plan notInEffect(Plan plan, Map<String, TopicState> current) {
+        Map<ConfigResource, Collection<AlterConfigOp>> updates = plan.getTopicsToUpdate()
+                .map((resource, ops) -> Tuple.of(resource, (Collection<AlterConfigOp>) Vector.ofAll(ops)
+                        .reject(op -> current.get(resource.name()).exists(state -> inEffect(op, state.getConfigs())))
+                        .toJavaList()))
+                .reject((resource, ops) -> ops.isEmpty());
+        var updated = updates.mapKeys(ConfigResource::name).mapValues(ops -> Vector.ofAll(ops).map(op -> op.configEntry().name()));
+        var currentConfigs = plan.getCurrentConfigs()
+                .flatMap((topic, values) -> updated.get(topic).map(names -> Tuple.of(topic, values.filterKeys(names::contains))));
+        return new Plan(
+                plan.getTopicsToCreate().reject(nt -> current.containsKey(nt.name())),
+                updates,
+                currentConfigs,
+                plan.getPartitionCountsToUpdate().reject((topic, counts) -> current.get(topic).exists(state -> state.getPartitions() >= counts._2)),
+                plan.getReplicationFactorsToUpdate().reject((topic, factors) -> current.get(topic).exists(state -> state.getReplicationFactor() == factors._2)),
+                plan.getTopicsToDelete().filter(current::containsKey));
+    }
+
+    private static boolean inEffect(AlterConfigOp op, ConfigProfile configs) {
+        var name = op.configEntry().name();
+        switch (op.opType()) {
+            case SET: return configs.get(name).contains(op.configEntry().value());
+            case DELETE: return configs.contains(name) && !configs.isOverride(name);
+            default: return false;
         }
-        return result;
-    }
-
-    private void printCurrentTopicInfo(Map<TopicDescription, Set<ConfigEntry>> definedTopics) {
-        println("------------------------------------------------------------------------");
-        println("--                  - CURRENTLY CONFIGURED TOPICS -                   --");
-        println("------------------------------------------------------------------------");
-        definedTopics.forEach((td, ces) -> {
-            println(td.name() + " (" + td.partitions().size() + " partitions)");
-            ces.toSortedSet(Comparator.comparing(ConfigEntry::name))
-                    .forEach(ce -> {
-                        var defaultIndicator = ce.source() == ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG ? " (*)" : "";
-                        println("  " + ce.name() + ": " + ce.value() + defaultIndicator);
-                    });
+    }
+
+    Plan createPlan(Map<String, TopicState> currentTopics, Map<String, TopicDefinition> targetTopics, boolean removeTopics, boolean incrementPartitionCount,
+                    boolean changeReplicationFactor) {
+        var updatedTopics = getTopicsToUpdate(currentTopics, targetTopics);
+        var currentConfigs = updatedTopics.map((resource, ops) -> {
+            var current = currentTopics.apply(resource.name()).getConfigs();
+            return Tuple.of(resource.name(), Vector.ofAll(ops).toMap(aco -> Tuple.of(aco.configEntry().name(), current.get(aco.configEntry().name()).getOrNull())));
         });
+        return new Plan(
+                getTopicsToCreate(currentTopics, targetTopics),
+                updatedTopics,
+                currentConfigs,
+                incrementPartitionCount ? getPartitionCountsToUpdate(currentTopics, targetTopics) : HashMap.empty(),
+                changeReplicationFactor ? getReplicationFactorsToUpdate(currentTopics, targetTopics) : HashMap.empty(),
+                removeTopics ? currentTopics.keySet().removeAll(targetTopics.keySet()) : HashSet.empty());
+    }
+
+    // reasons why the plan no longer matches the current state of the topics it affects
+    Seq<String> getStaleTopics(Plan plan, Map<String, TopicState> current) {
+        var partitions = current.mapValues(TopicState::getPartitions);
+        var replication = current.mapValues(TopicState::getReplicationFactor);
+        var created = plan.getTopicsToCreate()
+                .map(NewTopic::name)
+                .filter(current::containsKey)
+                .map(topic -> topic + " already exists");
+        var updated = plan.getCurrentConfigs()
+                .toVector()
+                .flatMap(t2 -> current.get(t2._1)
+                        .map(TopicState::getConfigs)
+                        .map(values -> t2._2
+                                .filter((name, value) -> !Objects.equals(value, values.get(name).getOrNull()))
+                                .map((name, value) -> Tuple.of(name, t2._1 + ": " + name + " is " + values.get(name).getOrNull() + ", planned from " + value))
+                                .values())
+                        .getOrElse(() -> Vector.of(t2._1 + " does not exist anymore")));
+        var counted = plan.getPartitionCountsToUpdate()
+                .filter((topic, count) -> !partitions.get(topic).contains(count._1))
+                .map((topic, count) -> Tuple.of(topic, topic + " has " + partitions.get(topic).map(String::valueOf).getOrElse("no") + " partitions, planned from " + count._1))
+                .values();
+        var replicated = plan.getReplicationFactorsToUpdate()
+                .filter((topic, factor) -> !replication.get(topic).contains(factor._1))
+                .map((topic, factor) -> Tuple.of(topic, topic + " has " + replication.get(topic).map(r -> "replication factor " + r).getOrElse("no replicas") + ", planned from " + factor._1))
+                .values();
+        var deleted = plan.getTopicsToDelete()
+                .filter(topic -> !current.containsKey(topic))
+                .map(topic -> topic + " does not exist anymore");
+        return Vector.<String>empty().appendAll(created).appendAll(updated).appendAll(counted).appendAll(replicated).appendAll(deleted);
+    }
+
+    void printPlan(Plan plan) {
+        report.plan(plan);
     }
 
-    Seq<NewTopic> getTopicsToCreate(Map<String, Set<ConfigEntry>> current, Map<String, TopicDefinition> targetTopics) {
+    // the outcome of every affected topic, failed if any of its operations failed
+    Map<String, Try<Void>> applyPlan(CustomAdminClient client, Plan plan, boolean dryRun) {
+        return applyJournaled(client, plan, dryRun, false, ApplyJournal.NONE, 0);
+    }
+
+    /**
+     * Applies the plan, recording the outcomes in the journal. Retriable failures are retried as often as given. The
+     * phases run concurrently, an operation only waits for the operations of earlier phases on the same topic: config
+     * updates before partition increases before replication changes. Phase timings run from the start of the apply to
+     * the end of the phase. A dry run of definitions already validated against a config schema doesn't ask the brokers
+     * to validate them again, its creations and config changes succeed right away.
+     */
+    private Map<String, Try<Void>> applyJournaled(CustomAdminClient client, Plan plan, boolean dryRun, boolean validated, ApplyJournal journal, int retries) {
+        metrics.count("ops_create", plan.getTopicsToCreate().size());
+        metrics.count("ops_update", plan.getTopicsToUpdate().size());
+        metrics.count("ops_config", plan.getTopicsToUpdate().values().map(Collection::size).sum().longValue());
+        metrics.count("ops_partitions", plan.getPartitionCountsToUpdate().size());
+        metrics.count("ops_replication", plan.getReplicationFactorsToUpdate().size());
+        metrics.count("ops_delete", plan.getTopicsToDelete().size());
+        var validatedDryRun = dryRun && validated;
+        var scheduler = new PhaseScheduler();
+        try {
+            var phases = Vector.of(
+                    createTopics(scheduler, client, plan.getTopicsToCreate(), dryRun, validatedDryRun, journal, retries),
+                    updateTopics(scheduler, client, plan.getTopicsToUpdate(), dryRun, validatedDryRun, journal, retries),
+                    updateTopicCount(scheduler, client, plan.getPartitionCountsToUpdate(), dryRun, journal, retries),
+                    updateReplicationFactor(scheduler, client, plan.getReplicationFactorsToUpdate(), dryRun, journal, retries),
+                    deleteTopics(scheduler, client, plan.getTopicsToDelete(), dryRun, journal, retries));
+            return phases.map(CompletableFuture::join)
+                    .<Map<String, Try<Void>>>foldLeft(HashMap.empty(), (all, phase) -> all.merge(phase, (first, next) -> first.isFailure() ? first : next));
+        } finally {
+            journal.close();
+        }
+    }
+
+    // the topic definitions, or nothing if any of the files could not be read
+    Option<Map<String, TopicDefinition>> parseInput(String definitions, boolean noReplication) {
+        Vector<String> files = Vector.of(definitions.split(",")).filter(s -> !s.isEmpty());
+        return DefinitionLoader.load(files)
+                .peekLeft(errors -> errors.forEach(this::error))
+                .map(result -> {
+                    if (noReplication) {
+                        result.forEach((k, v) -> v.setReplication(1));
+                    }
+                    return (Map<String, TopicDefinition>) result;
+                })
+                .toOption();
+    }
+
+    Seq<NewTopic> getTopicsToCreate(Map<String, TopicState> current, Map<String, TopicDefinition> targetTopics) {
         Map<String, TopicDefinition> newTopics = targetTopics.removeAll(current.keySet());
         return newTopics
                 .map(t2 -> new NewTopic(t2._1, t2._2.getPartitions(), (short) t2._2.getReplication()).configs(t2._2.getConfig()))
                 .sortBy(NewTopic::name);
     }
 
-    private void createTopics(CustomAdminClient client, Seq<NewTopic> newTopics, boolean dryRun) {
-        println("------------------------------------------------------------------------");
-        println("--                        - TOPICS TO CREATE -                        --");
-        println("------------------------------------------------------------------------");
-        newTopics.forEach(nt -> println(nt.name()));
-        client.doCreateTopics(newTopics, dryRun)
-                .orTimeout(5, TimeUnit.SECONDS)
-                .whenComplete((nil, th) -> {
-                    if (th != null) {
-                        errorPrintln("Could not create new topics with", th);
-                    }
-                })
-                .join();
-        println("");
-    }
-
-    Map<ConfigResource, Collection<AlterConfigOp>> getTopicsToUpdate(Map<String, Set<ConfigEntry>> current, Map<String, TopicDefinition> targetTopics) {
-        Set<String> toUpdate = targetTopics.keySet().retainAll(current.keySet());
-        return toUpdate
-                .toMap(topic -> {
-                    var updates = MapOps.toConfigOps(
-                            current.apply(topic).toMap(ce -> Tuple.of(ce.name(), ce)),
-                            targetTopics.apply(topic).getConfigMap());
-                    return Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, topic), updates);
-                })
-                .filterValues(c -> !c.isEmpty());
+    private CompletableFuture<Map<String, Try<Void>>> createTopics(PhaseScheduler scheduler, CustomAdminClient client, Seq<NewTopic> newTopics, boolean dryRun,
+                                                 boolean validatedDryRun, ApplyJournal journal, int retries) {
+        return applyPhase(scheduler, client, "create", newTopics.map(NewTopic::name).toSet(), true, retries,
+                topics -> validatedDryRun
+                        ? succeeded(topics)
+                        : client.doCreateTopics(newTopics.filter(nt -> topics.contains(nt.name())), dryRun, results -> journal.record("create", results)));
     }
 
-    private void updateTopics(CustomAdminClient client, Map<ConfigResource, Collection<AlterConfigOp>> toUpdate, boolean dryRun) {
-        println("------------------------------------------------------------------------");
-        println("--                        - TOPICS TO UPDATE -                        --");
-        println("------------------------------------------------------------------------");
-        toUpdate.forEach((key, value) -> {
-            println(key.name());
-            value.forEach(aco -> println("  " + aco.configEntry().name() + ": " + aco.configEntry().value() + " (" + aco.opType() + ")"));
-        });
-        client.doUpdateTopics(toUpdate, dryRun)
-                .orTimeout(5, TimeUnit.SECONDS)
-                .whenComplete((nil, th) -> {
-                    if (th != null) {
-                        errorPrintln("Could not update topics with", th);
-                    }
-                })
-                .join();
-        println("");
+    Map<ConfigResource, Collection<AlterConfigOp>> getTopicsToUpdate(Map<String, TopicState> current, Map<String, TopicDefinition> targetTopics) {
+        return ConfigDiff.diff(current, targetTopics);
+    }
+
+    private CompletableFuture<Map<String, Try<Void>>> updateTopics(PhaseScheduler scheduler, CustomAdminClient client, Map<ConfigResource, Collection<AlterConfigOp>> toUpdate,
+                                                 boolean dryRun, boolean validatedDryRun, ApplyJournal journal, int retries) {
+        return applyPhase(scheduler, client, "update", toUpdate.keySet().map(ConfigResource::name), true, retries,
+                topics -> validatedDryRun
+                        ? succeeded(topics)
+                        : client.doUpdateTopics(toUpdate.filterKeys(resource -> topics.contains(resource.name())), dryRun, results -> journal.record("update", results)));
     }
 
-    private Map<String, Tuple2<Integer, Integer>> getPartitionCountsToUpdate(Set<TopicDescription> currentTopics, Map<String, TopicDefinition> targetTopics) {
+    private static CompletableFuture<Map<String, Try<Void>>> succeeded(Set<String> topics) {
+        return CompletableFuture.completedFuture(topics.toMap(topic -> Tuple.of(topic, Try.<Void>success(null))));
+    }
+
+    private Map<String, Tuple2<Integer, Integer>> getPartitionCountsToUpdate(Map<String, TopicState> currentTopics, Map<String, TopicDefinition> targetTopics) {
         return currentTopics
-                .flatMap(td -> targetTopics.get(td.name())
+                .flatMap((topic, state) -> targetTopics.get(topic)
                         .map(TopicDefinition::getPartitions)
-                        .flatMap(i -> i > td.partitions().size() ? Option.of(Tuple.of(td.name(), Tuple.of(td.partitions().size(), i))) : Option.none()))
-                .toMap(Function.identity());
-    }
-
-    private void updateTopicCount(CustomAdminClient client, Map<String, Tuple2<Integer, Integer>> updatedTopicCounts, boolean dryRun, boolean incrementPartitionCount) {
-        if (incrementPartitionCount) {
-            println("------------------------------------------------------------------------");
-            println("--                 - PARTITION COUNTS TO INCREASE -                   --");
-            println("------------------------------------------------------------------------");
-            updatedTopicCounts.forEach((topic, count) -> println(topic + " " + count._1 + " -> " + count._2));
-            if (!dryRun) {
-                client.doUpdatePartitionCount(updatedTopicCounts.mapValues(t2 -> t2._2));
-            }
+                        .filter(i -> i > state.getPartitions())
+                        .map(i -> Tuple.of(topic, Tuple.of(state.getPartitions(), i))));
+    }
+
+    private CompletableFuture<Map<String, Try<Void>>> updateTopicCount(PhaseScheduler scheduler, CustomAdminClient client, Map<String, Tuple2<Integer, Integer>> updatedTopicCounts,
+                                                     boolean dryRun, ApplyJournal journal, int retries) {
+        return applyPhase(scheduler, client, "partitions", dryRun ? HashSet.empty() : updatedTopicCounts.keySet(), true, retries,
+                topics -> new MutationWaves(client, report).increasePartitions(updatedTopicCounts.filterKeys(topics::contains).mapValues(t2 -> t2._2))
+                        .thenApply(results -> journal.record("partitions", results)));
+    }
+
+    private Map<String, Tuple2<Integer, Integer>> getReplicationFactorsToUpdate(Map<String, TopicState> currentTopics, Map<String, TopicDefinition> targetTopics) {
+        return currentTopics
+                .flatMap((topic, state) -> targetTopics.get(topic)
+                        .map(TopicDefinition::getReplication)
+                        .filter(r -> r != state.getReplicationFactor())
+                        .map(r -> Tuple.of(topic, Tuple.of(state.getReplicationFactor(), r))));
+    }
+
+    // the reassignment throttles the brokers while it runs, so it isn't split, and succeeds or fails as a whole
+    private CompletableFuture<Map<String, Try<Void>>> updateReplicationFactor(PhaseScheduler scheduler, CustomAdminClient client, Map<String, Tuple2<Integer, Integer>> replicationFactors,
+                                                            boolean dryRun, ApplyJournal journal, int retries) {
+        return applyPhase(scheduler, client, "replication", dryRun ? HashSet.empty() : replicationFactors.keySet(), false, retries,
+                topics -> new Reassignment(client, report)
+                        .run(replicationFactors.filterKeys(topics::contains).mapValues(t2 -> t2._2))
+                        .handle((nil, th) -> journal.record("replication", topics.toMap(topic -> Tuple.of(topic, th == null ? Try.<Void>success(null) : Try.<Void>failure(unwrap(th)))))));
+    }
+
+    private CompletableFuture<Map<String, Try<Void>>> deleteTopics(PhaseScheduler scheduler, CustomAdminClient client, Set<String> topics, boolean dryRun, ApplyJournal journal, int retries) {
+        return applyPhase(scheduler, client, "delete", dryRun ? HashSet.empty() : topics, true, retries,
+                deleted -> new MutationWaves(client, report).delete(deleted).thenApply(results -> journal.record("delete", results)));
+    }
+
+    // schedules the operations of the topics, and times and reports the phase once all of them completed, with their outcomes
+    private CompletableFuture<Map<String, Try<Void>>> applyPhase(PhaseScheduler scheduler, CustomAdminClient client, String action, Set<String> topics, boolean split, int retries,
+                                               Function<Set<String>, CompletableFuture<Map<String, Try<Void>>>> apply) {
+        if (topics.isEmpty()) {
+            return CompletableFuture.completedFuture(HashMap.empty());
         }
+        var timer = metrics.startPhase(action);
+        var backoffMs = client.settings().getResumeBackoffMs();
+        return scheduler.schedule(topics, split, batch -> withRetries(batch, retries, backoffMs, apply))
+                .thenApply(results -> {
+                    timer.stop();
+                    printApplyResults(action, results);
+                    return results;
+                });
     }
 
-    private void deleteTopics(CustomAdminClient client, Set<String> topics, boolean dryRun, boolean removeTopics) {
-        if (removeTopics) {
-            println("------------------------------------------------------------------------");
-            println("--                        - TOPICS TO DELETE -                        --");
-            println("------------------------------------------------------------------------");
-            topics.forEach(topic -> println("  " + topic));
-            if (!dryRun) {
-                client.doDeleteTopics(topics);
+    // applies the operations again for the topics failing with a retriable error, after a backoff doubling every time
+    private CompletableFuture<Map<String, Try<Void>>> withRetries(Set<String> topics, int retries, long backoffMs,
+                                                                  Function<Set<String>, CompletableFuture<Map<String, Try<Void>>>> apply) {
+        return apply.apply(topics).thenCompose(results -> {
+            var retriable = results.filterValues(result -> result.isFailure() && isRetriable(result.getCause())).keySet();
+            if (retries <= 0 || retriable.isEmpty()) {
+                return CompletableFuture.completedFuture(results);
             }
-        }
+            report.info("Retrying " + retriable.size() + " topics in " + backoffMs + " ms");
+            metrics.count("retries", retriable.size());
+            return CompletableFuture.supplyAsync(() -> retriable, CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS))
+                    .thenCompose(again -> withRetries(again, retries - 1, backoffMs * 2, apply))
+                    .thenApply(retried -> results.merge(retried, (first, last) -> last));
+        });
+    }
+
+    private static boolean isRetriable(Throwable th) {
+        return th instanceof RetriableException || th instanceof TimeoutException;
     }
 
-    private void println(String s) {
-        System.out.println(s);
+    private static Throwable unwrap(Throwable th) {
+        return th instanceof CompletionException && th.getCause() != null ? th.getCause() : th;
     }
 
-    private void errorPrintln(String s, Throwable... args) {
-        var messages = Arrays.stream(args).map(Throwable::getMessage).collect(Collectors.joining("\n"));
-        System.err.println(s);
-        if (!messages.isBlank()) {
-            System.out.println(messages);
+    private void printApplyResults(String action, Map<String, Try<Void>> results) {
+        var failures = results.count(t2 -> t2._2.isFailure());
+        metrics.count("failures", failures);
+        if (failures > 0) {
+            failed.set(true);
         }
+        report.applyResults(action, results);
+    }
+
+    private void error(String message, Throwable... causes) {
+        failed.set(true);
+        report.error(message, causes);
     }
 }
@@ -6,18 +6,58 @@ import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.List;
+
 import static org.kohsuke.args4j.OptionHandlerFilter.ALL;
 
 public class KafkaTopicConfiguratorMain {
 
     private static final Logger LOG = LoggerFactory.getLogger(KafkaTopicConfiguratorMain.class);
 
-    @Option(name="-bootstrap", usage = "kafka bootstrap servers, in the form host1:port1,host2:port2,...", required = true)
+    @Option(name="-bootstrap", usage = "kafka bootstrap servers, in the form host1:port1,host2:port2,...", forbids = "-clusters")
     private String bootstrap;
 
-    @Option(name = "-definitions", usage = "topic definition files, in the form config1.yml,config2.yml,...", required = true)
+    @Option(name = "-clusters", usage = "file with the named clusters to reconcile the definitions with, each with its bootstrap servers and extra properties files",
+            forbids = {"-bootstrap", "-extraProperties", "-plan", "-apply", "-watch", "-journal"})
+    private String clusters;
+
+    @Option(name = "-maxParallelClusters", usage = "maximum number of clusters reconciled at the same time with -clusters")
+    private int maxParallelClusters = 3;
+
+    @Option(name = "-definitions", usage = "topic definition files, in the form config1.yml,config2.yml,...")
     private String definitions;
 
+    @Option(name = "-plan", usage = "write the changes to the given plan file instead of applying them", forbids = "-apply")
+    private String plan;
+
+    @Option(name = "-apply", usage = "apply the changes from the given plan file, if the affected topics haven't changed since", forbids = {"-definitions", "-plan"})
+    private String apply;
+
+    @Option(name = "-journal", usage = "record the plan and the outcome of every applied topic operation in this file, for -resume", forbids = "-plan")
+    private String journal;
+
+    @Option(name = "-resume", usage = "apply the operations of the -journal which didn't succeed, retrying retriable errors with exponential backoff",
+            depends = "-journal", forbids = {"-definitions", "-apply", "-watch"})
+    private boolean resume = false;
+
+    @Option(name = "-resumeRetries", usage = "number of times -resume retries topics failing with a retriable error")
+    private int resumeRetries = 5;
+
+    @Option(name = "-resumeBackoffMs", usage = "backoff before the first retry of -resume, doubled for every following one")
+    private long resumeBackoffMs = 1000;
+
+    @Option(name = "-validate", usage = "only check the config of the definitions against -configSchema, or the bundled Kafka 2.7 schema, without a cluster",
+            depends = "-definitions", forbids = {"-bootstrap", "-clusters", "-plan", "-apply", "-journal", "-resume", "-watch"})
+    private boolean validate = false;
+
+    @Option(name = "-configSchema", usage = "topic config schema written by -writeConfigSchema, the definitions are checked against it and -dryRun sends no validation requests")
+    private String configSchema;
+
+    @Option(name = "-writeConfigSchema", usage = "write the topic config schema of the -bootstrap cluster to this file",
+            depends = "-bootstrap", forbids = {"-definitions", "-apply", "-resume", "-watch", "-configSchema"})
+    private String writeConfigSchema;
+
     @Option(name = "-extraProperties", usage = "extra .properties files for configuring the client, in the form config1.properties,config2.properties,...")
     private String extraProperties;
 
@@ -33,11 +73,135 @@ public class KafkaTopicConfiguratorMain {
     @Option(name = "-incrementPartitionCount", usage = "increment the partition count if changed (NOTE: seldom safe for compacted topics)")
     private boolean incrementPartitionCount = false;
 
+    @Option(name = "-changeReplicationFactor", usage = "change the replication factor of existing topics, by reassigning their partitions in throttled waves",
+            forbids = "-noReplication")
+    private boolean changeReplicationFactor = false;
+
+    @Option(name = "-reassignmentWaveSize", usage = "number of partitions reassigned at once when changing replication factors")
+    private int reassignmentWaveSize = 50;
+
+    @Option(name = "-reassignmentThrottleBytes", usage = "replication throttle of the brokers taking part in a reassignment, in bytes per second")
+    private long reassignmentThrottleBytes = 10_485_760;
+
+    @Option(name = "-reassignmentPollMs", usage = "interval between checks whether a reassignment wave is done")
+    private int reassignmentPollMs = 5000;
+
+    @Option(name = "-reassignmentTimeoutMs", usage = "time a reassignment wave gets to complete, after that it is cancelled, its throttles are removed and its topics fail")
+    private int reassignmentTimeoutMs = 3_600_000;
+
+    @Option(name = "-mutationWaveSize", usage = "number of topics whose partitions are increased or which are deleted in one wave, the next wave waits until the metadata shows the changes")
+    private int mutationWaveSize = 500;
+
+    @Option(name = "-mutationConfirmPollMs", usage = "interval between checks whether the metadata shows the changes of a wave")
+    private int mutationConfirmPollMs = 1000;
+
+    @Option(name = "-mutationConfirmTimeoutMs", usage = "time the metadata gets to show the changes of a wave before its topics fail")
+    private int mutationConfirmTimeoutMs = 60000;
+
+    @Option(name = "-mutationRate", usage = "topic creations, partition increases and deletions sent per second, 0 for unlimited. lowered while the controller mutation quota throttles requests. config changes and -dryRun creations aren't limited, the quota doesn't cover them")
+    private int mutationRate = 100;
+
+    @Option(name = "-mutationQuotaRetries", usage = "number of times topics rejected by the controller mutation quota are sent again")
+    private int mutationQuotaRetries = 10;
+
+    @Option(name = "-watch", usage = "keep running, reconcile the topics whose definitions change and check for drift periodically", forbids = {"-plan", "-apply", "-journal"})
+    private boolean watch = false;
+
+    @Option(name = "-serve", usage = "keep running, ensure the topics POSTed as JSON to http://localhost:PORT/topics exist as defined",
+            depends = "-bootstrap", forbids = {"-definitions", "-plan", "-apply", "-journal", "-resume", "-watch", "-streamChunkSize"})
+    private Integer serve;
+
+    @Option(name = "-coalesceMs", usage = "in -serve mode, requests arriving within this time of the first one are reconciled together")
+    private long coalesceMs = 100;
+
+    @Option(name = "-snapshotTtlMs", usage = "in -serve mode, how long the described state of a topic answers requests without asking the brokers")
+    private long snapshotTtlMs = 60000;
+
+    @Option(name = "-driftCheckIntervalSeconds", usage = "interval between full reconciliations in -watch mode")
+    private long driftCheckIntervalSeconds = 300;
+
+    @Option(name = "-scopeDefinitions", usage = "only look at topics named in the definition files, -removeTopics never removes anything in this scope")
+    private boolean scopeDefinitions = false;
+
+    @Option(name = "-scopePrefixes", usage = "only look at topics starting with one of the prefixes, in the form prefix1,prefix2,...")
+    private String scopePrefixes;
+
+    @Option(name = "-scopeRegex", usage = "only look at topics matching the regular expression")
+    private String scopeRegex;
+
+    @Option(name = "-shardCount", usage = "split the topics between this many workers by a hash of their names, each run with its own -shardIndex",
+            forbids = {"-apply", "-resume", "-serve"})
+    private int shardCount = 1;
+
+    @Option(name = "-shardIndex", usage = "the share of the topics this worker reconciles, from 0 to -shardCount minus one", depends = "-shardCount")
+    private int shardIndex = 0;
+
+    @Option(name = "-outputFormat", usage = "format of the console report, text or ndjson (one JSON object per line)")
+    private String outputFormat = "text";
+
+    @Option(name = "-verbosity", usage = "detail of the console report: FULL includes the current configuration of every topic, CHANGES only the plan and its outcome, SUMMARY only counts and errors")
+    private Report.Verbosity verbosity = Report.Verbosity.FULL;
+
+    @Option(name = "-metricsFile", usage = "write phase timings, admin request metrics and topic counts of the run to this file")
+    private String metricsFile;
+
+    @Option(name = "-metricsFormat", usage = "format of the -metricsFile, json or prometheus (textfile collector)")
+    private String metricsFormat = "json";
+
+    @Option(name = "-describeBatchSize", usage = "number of topics described in a single describeConfigs request")
+    private int describeBatchSize = 200;
+
+    @Option(name = "-describeMaxInFlight", usage = "maximum number of describeConfigs requests awaiting a response at the same time")
+    private int describeMaxInFlight = 4;
+
+    @Option(name = "-applyChunkSize", usage = "number of topics created or updated in a single request")
+    private int applyChunkSize = 100;
+
+    @Option(name = "-streamChunkSize", usage = "describe, diff and apply this many topics at a time instead of describing the whole cluster first",
+            forbids = {"-plan", "-apply", "-journal", "-watch"})
+    private int streamChunkSize = 0;
+
+    @Option(name = "-applyMaxInFlight", usage = "maximum number of create or update requests awaiting a response at the same time")
+    private int applyMaxInFlight = 2;
+
+    @Option(name = "-applyTimeoutMs", usage = "base deadline of a create or update request in milliseconds")
+    private int applyTimeoutMs = 5000;
+
+    @Option(name = "-applyTimeoutPerTopicMs", usage = "deadline added to a create or update request for every topic it contains")
+    private int applyTimeoutPerTopicMs = 100;
+
+    @Option(name = "-completionExecutor", usage = "thread processing the admin responses: pool (-completionThreads threads of its own), direct (the admin client's network thread) or common (the common fork join pool)")
+    private String completionExecutor = CompletionExecutor.POOL;
+
+    @Option(name = "-completionThreads", usage = "number of threads of the pool processing admin responses")
+    private int completionThreads = 2;
+
     public void doMain(String[] args) {
         CmdLineParser parser = new CmdLineParser(this);
         try {
             // parse the arguments.
             parser.parseArgument(args);
+            if (bootstrap == null && clusters == null && !validate) {
+                throw new CmdLineException(parser, "either -bootstrap or -clusters is required");
+            }
+            if (definitions == null && apply == null && !resume && writeConfigSchema == null && serve == null) {
+                throw new CmdLineException(parser, "either -definitions, -apply, -resume, -serve or -writeConfigSchema is required");
+            }
+            if (!outputFormat.equals("text") && !outputFormat.equals("ndjson")) {
+                throw new CmdLineException(parser, "-outputFormat must be text or ndjson");
+            }
+            if (!metricsFormat.equals("json") && !metricsFormat.equals("prometheus")) {
+                throw new CmdLineException(parser, "-metricsFormat must be json or prometheus");
+            }
+            if (!List.of(CompletionExecutor.POOL, CompletionExecutor.DIRECT, CompletionExecutor.COMMON).contains(completionExecutor)) {
+                throw new CmdLineException(parser, "-completionExecutor must be pool, direct or common");
+            }
+            if (streamChunkSize < 0) {
+                throw new CmdLineException(parser, "-streamChunkSize must be positive");
+            }
+            if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+                throw new CmdLineException(parser, "-shardIndex must be between 0 and -shardCount minus one");
+            }
         } catch (CmdLineException e) {
             // if there's a problem in the command line, you'll get this exception. this will report an error message.
             System.err.println(e.getMessage());
@@ -50,7 +214,87 @@ public class KafkaTopicConfiguratorMain {
             System.err.println("  Example: java KafkaTopicConfiguratorMain" + parser.printExample(ALL));
             return;
         }
-        new KafkaTopicConfigurator().execute(bootstrap, definitions, extraProperties, dryRun, removeTopics, noReplication, incrementPartitionCount);
+        ConfigSchema schema = null;
+        if (configSchema != null) {
+            try {
+                schema = ConfigSchema.read(configSchema);
+            } catch (RuntimeException e) {
+                LOG.error("could not read the config schema " + configSchema, e);
+                System.exit(1);
+            }
+        }
+        var settings = new ClientSettings();
+        settings.setDescribeBatchSize(describeBatchSize);
+        settings.setDescribeMaxInFlight(describeMaxInFlight);
+        settings.setApplyChunkSize(applyChunkSize);
+        settings.setApplyMaxInFlight(applyMaxInFlight);
+        settings.setApplyTimeoutMs(applyTimeoutMs);
+        settings.setApplyTimeoutPerTopicMs(applyTimeoutPerTopicMs);
+        settings.setReassignmentWaveSize(reassignmentWaveSize);
+        settings.setReassignmentThrottleBytes(reassignmentThrottleBytes);
+        settings.setReassignmentPollMs(reassignmentPollMs);
+        settings.setReassignmentTimeoutMs(reassignmentTimeoutMs);
+        settings.setMutationWaveSize(mutationWaveSize);
+        settings.setMutationConfirmPollMs(mutationConfirmPollMs);
+        settings.setMutationConfirmTimeoutMs(mutationConfirmTimeoutMs);
+        settings.setMutationRatePerSecond(mutationRate);
+        settings.setMutationQuotaRetries(mutationQuotaRetries);
+        settings.setResumeRetries(resumeRetries);
+        settings.setResumeBackoffMs(resumeBackoffMs);
+        settings.setStreamChunkSize(streamChunkSize);
+        settings.setCompletionExecutor(completionExecutor);
+        settings.setCompletionThreads(completionThreads);
+        settings.setConfigSchema(schema);
+        var scope = new TopicScope(scopeDefinitions, scopePrefixes, scopeRegex).sharded(shardIndex, shardCount);
+        var report = Report.create(outputFormat, verbosity);
+        if (serve != null) {
+            var metrics = new RunMetrics();
+            try {
+                new ProvisioningService(new KafkaTopicConfigurator(metrics, report), new CustomAdminClient(bootstrap, extraProperties, settings, metrics), metrics,
+                        coalesceMs, snapshotTtlMs, dryRun, incrementPartitionCount, changeReplicationFactor)
+                        .run(serve);
+            } catch (IOException e) {
+                LOG.error("could not serve on port " + serve, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (watch) {
+            try {
+                new WatchDaemon(bootstrap, definitions, extraProperties, settings, scope, report, dryRun, removeTopics, noReplication, incrementPartitionCount, changeReplicationFactor)
+                        .run(driftCheckIntervalSeconds);
+            } catch (IllegalArgumentException e) {
+                LOG.error("not watching, the definitions could not be read", e);
+                System.exit(1);
+            } catch (IOException e) {
+                LOG.error("could not watch the definition files", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            var metrics = new RunMetrics();
+            boolean ok;
+            if (validate) {
+                ok = new KafkaTopicConfigurator(metrics, report).validate(definitions, schema != null ? schema : ConfigSchema.builtIn(), noReplication);
+            } else if (writeConfigSchema != null) {
+                ok = new KafkaTopicConfigurator(metrics, report).writeConfigSchema(bootstrap, extraProperties, settings, writeConfigSchema);
+            } else if (clusters != null) {
+                ok = new ClusterFanOut(metrics, report).execute(ClusterProfile.readAll(clusters), definitions, settings, scope, maxParallelClusters,
+                        dryRun, removeTopics, noReplication, incrementPartitionCount, changeReplicationFactor);
+            } else if (resume) {
+                ok = new KafkaTopicConfigurator(metrics, report).resume(bootstrap, extraProperties, settings, journal, dryRun);
+            } else if (apply != null) {
+                ok = new KafkaTopicConfigurator(metrics, report).executePlan(bootstrap, extraProperties, settings, apply, journal, dryRun);
+            } else {
+                ok = new KafkaTopicConfigurator(metrics, report).execute(bootstrap, definitions, extraProperties, settings, scope, plan, journal, dryRun, removeTopics, noReplication, incrementPartitionCount, changeReplicationFactor);
+            }
+            if (metricsFile != null) {
+                if (metricsFormat.equals("prometheus")) metrics.writePrometheus(metricsFile);
+                else metrics.writeJson(metricsFile);
+            }
+            if (!ok) {
+                System.exit(1);
+            }
+        }
     }
 
     public static void main(String[] args) {
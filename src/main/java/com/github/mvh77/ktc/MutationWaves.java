@@ -0,0 +1,75 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Increases partition counts and deletes topics mutationWaveSize topics at a time. A wave is only done once the
+ * metadata shows its effect, the new partition counts in describeTopics or the deleted topics gone from listTopics,
+ * the next wave starts after that. Topics whose change doesn't show within mutationConfirmTimeoutMs fail.
+ */
+class MutationWaves {
+
+    private final CustomAdminClient client;
+    private final ClientSettings settings;
+    private final Report report;
+
+    MutationWaves(CustomAdminClient client, Report report) {
+        this.client = client;
+        this.settings = client.settings();
+        this.report = report;
+    }
+
+    CompletableFuture<Map<String, Try<Void>>> increasePartitions(Map<String, Integer> partitionCounts) {
+        return run("partitions", partitionCounts.keySet(),
+                wave -> client.doUpdatePartitionCount(partitionCounts.filterKeys(wave::contains)),
+                pending -> client.getPartitionCounts(pending)
+                        .thenApply(counts -> pending.filter(topic -> counts.get(topic).forAll(count -> count < partitionCounts.apply(topic)))));
+    }
+
+    CompletableFuture<Map<String, Try<Void>>> delete(Set<String> topics) {
+        return run("delete", topics, client::doDeleteTopics, pending -> client.getExistingTopics(pending));
+    }
+
+    // pending gives the topics whose change doesn't show in the metadata yet
+    private CompletableFuture<Map<String, Try<Void>>> run(String action, Set<String> topics, Function<Set<String>, CompletableFuture<Map<String, Try<Void>>>> send,
+                                                          Function<Set<String>, CompletableFuture<Set<String>>> pending) {
+        var waves = topics.toVector().sorted().grouped(Math.max(1, settings.getMutationWaveSize())).toVector();
+        return CompletableFutures.traverse(waves.zipWithIndex().asJava(), wave -> {
+                    if (waves.size() > 1) {
+                        report.info("Wave " + (wave._2 + 1) + " of " + waves.size() + " (" + action + "): " + wave._1.size() + " topics");
+                    }
+                    return runWave(wave._1.toSet(), send, pending);
+                }, 1)
+                .thenApply(results -> Vector.ofAll(results).<Map<String, Try<Void>>>foldLeft(HashMap.empty(), Map::merge));
+    }
+
+    private CompletableFuture<Map<String, Try<Void>>> runWave(Set<String> wave, Function<Set<String>, CompletableFuture<Map<String, Try<Void>>>> send,
+                                                              Function<Set<String>, CompletableFuture<Set<String>>> pending) {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getMutationConfirmTimeoutMs());
+        return send.apply(wave).thenCompose(results -> confirm(results.filterValues(Try::isSuccess).keySet(), pending, deadline)
+                .thenApply(unconfirmed -> results.merge(unconfirmed.toMap(topic -> Tuple.of(topic, Try.<Void>failure(new IllegalStateException(
+                        "the change of " + topic + " didn't show in the metadata within " + settings.getMutationConfirmTimeoutMs() + " ms")))), (sent, failed) -> failed)));
+    }
+
+    // the topics still pending at the deadline, a failed check counts as nothing confirmed
+    private CompletableFuture<Set<String>> confirm(Set<String> topics, Function<Set<String>, CompletableFuture<Set<String>>> pending, long deadline) {
+        if (topics.isEmpty()) {
+            return CompletableFuture.completedFuture(topics);
+        }
+        return pending.apply(topics)
+                .exceptionally(th -> topics)
+                .thenCompose(still -> still.isEmpty() || System.nanoTime() >= deadline
+                        ? CompletableFuture.completedFuture(still)
+                        : CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(settings.getMutationConfirmPollMs(), TimeUnit.MILLISECONDS))
+                                .thenCompose(nil -> confirm(still, pending, deadline)));
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.control.Try;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * One JSON object per line on stdout, each with a type field, and a cluster field when reconciling several clusters. Errors are reported on stdout as well, so a consumer
+ * sees everything in order.
+ */
+class NdjsonReport extends Report {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonGenerator json;
+
+    NdjsonReport(Verbosity verbosity, OutputStream out, PrintStream err, String cluster) {
+        super(verbosity, out, err, cluster);
+        try {
+            this.json = FACTORY.createGenerator(this.out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    Report forCluster(String cluster) {
+        return new NdjsonReport(verbosity, target, err, cluster);
+    }
+
+    @Override
+    synchronized void currentTopics(Map<String, TopicState> topics) {
+        if (verbosity != Verbosity.FULL) {
+            event("described", g -> g.writeNumberField("topics", topics.size()));
+            return;
+        }
+        topics.toVector()
+                .sortBy(t2 -> t2._1)
+                .forEach(t2 -> event("topic", g -> {
+                    var configs = t2._2.getConfigs();
+                    g.writeStringField("topic", t2._1);
+                    g.writeNumberField("partitions", t2._2.getPartitions());
+                    g.writeNumberField("replication", t2._2.getReplicationFactor());
+                    g.writeObjectFieldStart("config");
+                    for (int i = 0; i < configs.size(); i++) {
+                        g.writeStringField(configs.name(i), configs.value(i));
+                    }
+                    g.writeEndObject();
+                    g.writeArrayFieldStart("dynamic");
+                    for (int i = 0; i < configs.size(); i++) {
+                        if (configs.isOverride(i)) {
+                            g.writeString(configs.name(i));
+                        }
+                    }
+                    g.writeEndArray();
+                }));
+        flush();
+    }
+
+    @Override
+    synchronized void outOfScope(Set<String> topics) {
+        if (verbosity == Verbosity.SUMMARY) {
+            event("outOfScope", g -> g.writeNumberField("topics", topics.size()));
+            return;
+        }
+        topics.toSortedSet().forEach(topic -> event("outOfScope", g -> g.writeStringField("topic", topic)));
+    }
+
+    @Override
+    synchronized void plan(Plan plan) {
+        if (verbosity != Verbosity.SUMMARY) {
+            plan.getTopicsToCreate().forEach(nt -> event("create", g -> {
+                g.writeStringField("topic", nt.name());
+                g.writeNumberField("partitions", nt.numPartitions());
+                g.writeNumberField("replication", nt.replicationFactor());
+            }));
+            plan.getTopicsToUpdate().toVector().sortBy(t2 -> t2._1.name()).forEach(t2 -> t2._2.forEach(aco -> event("update", g -> {
+                g.writeStringField("topic", t2._1.name());
+                g.writeStringField("config", aco.configEntry().name());
+                g.writeStringField("value", aco.configEntry().value());
+                g.writeStringField("op", aco.opType().name());
+            })));
+            plan.getPartitionCountsToUpdate().toVector().sortBy(t2 -> t2._1).forEach(t2 -> event("partitions", g -> {
+                g.writeStringField("topic", t2._1);
+                g.writeNumberField("from", t2._2._1);
+                g.writeNumberField("to", t2._2._2);
+            }));
+            plan.getReplicationFactorsToUpdate().toVector().sortBy(t2 -> t2._1).forEach(t2 -> event("replication", g -> {
+                g.writeStringField("topic", t2._1);
+                g.writeNumberField("from", t2._2._1);
+                g.writeNumberField("to", t2._2._2);
+            }));
+            plan.getTopicsToDelete().toSortedSet().forEach(topic -> event("delete", g -> g.writeStringField("topic", topic)));
+        }
+        event("plan", g -> {
+            g.writeNumberField("create", plan.getTopicsToCreate().size());
+            g.writeNumberField("update", plan.getTopicsToUpdate().size());
+            g.writeNumberField("configChanges", plan.getTopicsToUpdate().values().map(Collection::size).sum().intValue());
+            g.writeNumberField("partitions", plan.getPartitionCountsToUpdate().size());
+            g.writeNumberField("replication", plan.getReplicationFactorsToUpdate().size());
+            g.writeNumberField("delete", plan.getTopicsToDelete().size());
+        });
+        flush();
+    }
+
+    @Override
+    synchronized void applyResults(String action, Map<String, Try<Void>> results) {
+        var failed = results.filterValues(Try::isFailure);
+        if (verbosity != Verbosity.SUMMARY) {
+            results.toVector().sortBy(t2 -> t2._1).forEach(t2 -> event("result", g -> {
+                g.writeStringField("action", action);
+                g.writeStringField("topic", t2._1);
+                g.writeBooleanField("success", t2._2.isSuccess());
+                if (t2._2.isFailure()) {
+                    g.writeStringField("error", t2._2.getCause().getMessage());
+                }
+            }));
+        } else {
+            failed.toVector().sortBy(t2 -> t2._1).forEach(t2 -> event("result", g -> {
+                g.writeStringField("action", action);
+                g.writeStringField("topic", t2._1);
+                g.writeBooleanField("success", false);
+                g.writeStringField("error", t2._2.getCause().getMessage());
+            }));
+        }
+        event("applied", g -> {
+            g.writeStringField("action", action);
+            g.writeNumberField("succeeded", results.size() - failed.size());
+            g.writeNumberField("total", results.size());
+        });
+        flush();
+    }
+
+    @Override
+    synchronized void clusters(Map<String, Boolean> results) {
+        results.toVector().sortBy(t2 -> t2._1).forEach(t2 -> event("cluster", g -> {
+            g.writeStringField("name", t2._1);
+            g.writeBooleanField("success", t2._2);
+        }));
+        flush();
+    }
+
+    @Override
+    synchronized void info(String message) {
+        event("info", g -> g.writeStringField("message", message));
+        flush();
+    }
+
+    @Override
+    synchronized void error(String message, Throwable... causes) {
+        event("error", g -> {
+            g.writeStringField("message", message);
+            g.writeArrayFieldStart("causes");
+            for (Throwable cause : causes) {
+                g.writeString(cause.getMessage());
+            }
+            g.writeEndArray();
+        });
+        flush();
+    }
+
+    @Override
+    synchronized void flush() {
+        try {
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void event(String type, Fields fields) {
+        try {
+            json.writeStartObject();
+            json.writeStringField("type", type);
+            if (cluster != null) {
+                json.writeStringField("cluster", cluster);
+            }
+            fields.write(json);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface Fields {
+        void write(JsonGenerator g) throws IOException;
+    }
+}
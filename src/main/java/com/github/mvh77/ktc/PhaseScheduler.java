@@ -0,0 +1,59 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Runs the phases of an apply concurrently. The operations of a phase on a topic only start once the operations
+ * scheduled on the same topic before completed, whatever their outcome, so only conflicting operations are ordered.
+ * The topics of a phase waiting for the same operations run as one batch. A phase which can't be split, like a
+ * reassignment throttling the brokers for its whole duration, runs as a single batch once everything it waits for
+ * completed.
+ */
+class PhaseScheduler {
+
+    private static final CompletableFuture<?> NOTHING = CompletableFuture.completedFuture(null);
+
+    // the batch last scheduled on every topic
+    private final java.util.Map<String, CompletableFuture<?>> last = new java.util.HashMap<>();
+
+    // the outcomes of all batches of the phase, a failed batch fails all of its topics
+    synchronized CompletableFuture<Map<String, Try<Void>>> schedule(Set<String> topics, boolean split,
+                                                                    Function<Set<String>, CompletableFuture<Map<String, Try<Void>>>> run) {
+        if (topics.isEmpty()) {
+            return CompletableFuture.completedFuture(HashMap.empty());
+        }
+        var groups = new IdentityHashMap<CompletableFuture<?>, Set<String>>();
+        if (split) {
+            topics.groupBy(topic -> last.getOrDefault(topic, NOTHING)).forEach(groups::put);
+        } else {
+            var waitFor = topics.<CompletableFuture<?>>map(topic -> last.getOrDefault(topic, NOTHING)).toJavaArray(CompletableFuture<?>[]::new);
+            groups.put(CompletableFuture.allOf(waitFor), topics);
+        }
+        var batches = Vector.ofAll(groups.entrySet()).map(group -> {
+            var batchTopics = group.getValue();
+            var batch = group.getKey()
+                    .handle((t, th) -> batchTopics)
+                    .thenCompose(run)
+                    .handle((results, th) -> th == null ? results : batchTopics.toMap(topic -> Tuple.of(topic, Try.<Void>failure(unwrap(th)))));
+            batchTopics.forEach(topic -> last.put(topic, batch));
+            return batch;
+        });
+        // batches complete normally, their failures are in the outcomes
+        return CompletableFutures.sequence(batches.toJavaList(), Vector.collector())
+                .thenApply(results -> results.<Map<String, Try<Void>>>foldLeft(HashMap.empty(), Map::merge));
+    }
+
+    private static Throwable unwrap(Throwable th) {
+        return th instanceof CompletionException && th.getCause() != null ? th.getCause() : th;
+    }
+}
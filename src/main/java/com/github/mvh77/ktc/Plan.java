@@ -0,0 +1,56 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple2;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Set;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+
+import java.util.Collection;
+import java.util.function.BiPredicate;
+
+/**
+ * The changes needed to bring the cluster in line with the topic definitions.
+ */
+@AllArgsConstructor
+@Getter
+public class Plan {
+
+    private final Seq<NewTopic> topicsToCreate;
+    private final Map<ConfigResource, Collection<AlterConfigOp>> topicsToUpdate;
+    // values of the updated configs at planning time, used to detect a stale plan
+    private final Map<String, Map<String, String>> currentConfigs;
+    // topic -> (current partition count, new partition count)
+    private final Map<String, Tuple2<Integer, Integer>> partitionCountsToUpdate;
+    // topic -> (current replication factor, new replication factor)
+    private final Map<String, Tuple2<Integer, Integer>> replicationFactorsToUpdate;
+    private final Set<String> topicsToDelete;
+
+    boolean isEmpty() {
+        return topicsToCreate.isEmpty() && topicsToUpdate.isEmpty() && partitionCountsToUpdate.isEmpty() && replicationFactorsToUpdate.isEmpty()
+                && topicsToDelete.isEmpty();
+    }
+
+    // the plan without the operations for which done holds, given the action and the topic
+    Plan without(BiPredicate<String, String> done) {
+        return new Plan(
+                topicsToCreate.reject(nt -> done.test("create", nt.name())),
+                topicsToUpdate.reject((resource, ops) -> done.test("update", resource.name())),
+                currentConfigs.reject((topic, configs) -> done.test("update", topic)),
+                partitionCountsToUpdate.reject((topic, counts) -> done.test("partitions", topic)),
+                replicationFactorsToUpdate.reject((topic, factors) -> done.test("replication", topic)),
+                topicsToDelete.reject(topic -> done.test("delete", topic)));
+    }
+
+    Set<String> affectedTopics() {
+        return topicsToDelete
+                .addAll(topicsToCreate.map(NewTopic::name))
+                .addAll(topicsToUpdate.keySet().map(ConfigResource::name))
+                .addAll(partitionCountsToUpdate.keySet())
+                .addAll(replicationFactorsToUpdate.keySet());
+    }
+}
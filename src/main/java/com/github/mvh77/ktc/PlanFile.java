@@ -0,0 +1,141 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.LinkedHashSet;
+import io.vavr.collection.List;
+import io.vavr.collection.TreeMap;
+import io.vavr.collection.Vector;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads and writes {@link Plan}s as JSON.
+ */
+public class PlanFile {
+
+    static final int VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void write(Plan plan, String path) {
+        try {
+            MAPPER.writeValue(new File(path), toJson(plan));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Plan read(String path) {
+        try {
+            return fromJson(MAPPER.readValue(new File(path), PlanJson.class), path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static PlanJson toJson(Plan plan) {
+        var json = new PlanJson();
+        json.setCreate(plan.getTopicsToCreate()
+                .map(nt -> new TopicJson(nt.name(), nt.numPartitions(), nt.replicationFactor(), nt.configs()))
+                .toJavaList());
+        json.setUpdate(plan.getTopicsToUpdate()
+                .toMap(t2 -> {
+                    var topic = t2._1.name();
+                    var current = plan.getCurrentConfigs().get(topic).getOrElse(HashMap.empty());
+                    var ops = List.ofAll(t2._2)
+                            .map(aco -> new ConfigOpJson(aco.configEntry().name(), aco.configEntry().value(), aco.opType(),
+                                    current.get(aco.configEntry().name()).getOrNull()))
+                            .toJavaList();
+                    return Tuple.of(topic, ops);
+                })
+                .toJavaMap());
+        json.setPartitions(plan.getPartitionCountsToUpdate()
+                .mapValues(t2 -> new PartitionsJson(t2._1, t2._2))
+                .toJavaMap());
+        json.setReplication(plan.getReplicationFactorsToUpdate()
+                .mapValues(t2 -> new ReplicationJson(t2._1, t2._2))
+                .toJavaMap());
+        json.setDelete(plan.getTopicsToDelete().toSortedSet().toJavaList());
+        return json;
+    }
+
+    // the source the plan was read from is named in errors
+    static Plan fromJson(PlanJson json, String source) {
+        if (json.getVersion() != VERSION) {
+            throw new IllegalArgumentException("unsupported plan version " + json.getVersion() + " in " + source);
+        }
+        var create = Vector.ofAll(json.getCreate())
+                .map(t -> new NewTopic(t.getName(), t.getPartitions(), t.getReplication()).configs(t.getConfig()));
+        var update = TreeMap.ofAll(json.getUpdate())
+                .toMap(t2 -> Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, t2._1), (Collection<AlterConfigOp>) List.ofAll(t2._2)
+                        .map(op -> new AlterConfigOp(new ConfigEntry(op.getName(), op.getValue()), op.getOp()))
+                        .toJavaList()));
+        var current = HashMap.ofAll(json.getUpdate())
+                .mapValues(ops -> List.ofAll(ops).toMap(op -> Tuple.of(op.getName(), op.getCurrent())));
+        var partitions = HashMap.ofAll(json.getPartitions())
+                .mapValues(p -> Tuple.of(p.getFrom(), p.getTo()));
+        var replication = HashMap.ofAll(json.getReplication())
+                .mapValues(r -> Tuple.of(r.getFrom(), r.getTo()));
+        return new Plan(create, update, current, partitions, replication, LinkedHashSet.ofAll(json.getDelete()));
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class PlanJson {
+        private int version = VERSION;
+        private java.util.List<TopicJson> create = java.util.List.of();
+        private Map<String, java.util.List<ConfigOpJson>> update = Map.of();
+        private Map<String, PartitionsJson> partitions = Map.of();
+        private Map<String, ReplicationJson> replication = Map.of();
+        private java.util.List<String> delete = java.util.List.of();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TopicJson {
+        private String name;
+        private int partitions;
+        private short replication;
+        private Map<String, String> config = Map.of();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConfigOpJson {
+        private String name;
+        private String value;
+        private AlterConfigOp.OpType op;
+        // value at planning time
+        private String current;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartitionsJson {
+        private int from;
+        private int to;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReplicationJson {
+        private int from;
+        private int to;
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ensures topics exist as defined, for services calling it at startup instead of running the tool themselves. A POST
+ * to /topics on the loopback interface carries topic definitions as JSON, laid out like the definition files. Requests
+ * arriving within coalesceMs of the first one are reconciled as one batch on a shared admin client, so their creations
+ * and config changes go out in the same requests. Topics described for a batch are kept in a snapshot for
+ * snapshotTtlMs, a request whose topics all match the snapshot is answered without asking the brokers. Topics are
+ * never deleted.
+ */
+class ProvisioningService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProvisioningService.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final KafkaTopicConfigurator configurator;
+    private final CustomAdminClient client;
+    private final RunMetrics metrics;
+    private final long coalesceMs;
+    private final long snapshotTtlNanos;
+    private final boolean dryRun;
+    private final boolean incrementPartitionCount;
+    private final boolean changeReplicationFactor;
+    // batches are reconciled on this thread, one after the other
+    private final ScheduledExecutorService batches = Executors.newSingleThreadScheduledExecutor();
+    // requests waiting for the next batch, guarded by this
+    private List<Request> pending = new ArrayList<>();
+    // described topics with the time they were described, only replaced by the batch thread
+    private volatile Map<String, Tuple2<TopicState, Long>> snapshot = HashMap.empty();
+    private HttpServer server;
+
+    ProvisioningService(KafkaTopicConfigurator configurator, CustomAdminClient client, RunMetrics metrics, long coalesceMs, long snapshotTtlMs,
+                        boolean dryRun, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        this.configurator = configurator;
+        this.client = client;
+        this.metrics = metrics;
+        this.coalesceMs = coalesceMs;
+        this.snapshotTtlNanos = TimeUnit.MILLISECONDS.toNanos(snapshotTtlMs);
+        this.dryRun = dryRun;
+        this.incrementPartitionCount = incrementPartitionCount;
+        this.changeReplicationFactor = changeReplicationFactor;
+    }
+
+    // serves until the process is stopped
+    void run(int port) throws IOException, InterruptedException {
+        start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        LOG.info("serving topic provisioning on http://localhost:{}/topics", port());
+        new CountDownLatch(1).await();
+    }
+
+    // binds to the port on the loopback interface, 0 picks a free one
+    void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/topics", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "ktc-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        batches.shutdownNow();
+        client.close();
+    }
+
+    /**
+     * The outcome of every topic once it is as defined. Answered from the snapshot if none of the topics needs a
+     * change, otherwise the topics join the next batch.
+     */
+    CompletableFuture<Map<String, TopicResult>> ensure(Map<String, TopicDefinition> topics) {
+        if (unchanged(topics)) {
+            metrics.count("service_snapshot_hits", 1);
+            return CompletableFuture.completedFuture(topics.mapValues(definition -> new TopicResult("unchanged", null)));
+        }
+        var request = new Request(topics, new CompletableFuture<>());
+        synchronized (this) {
+            pending.add(request);
+            if (pending.size() == 1) {
+                batches.schedule(this::reconcileBatch, coalesceMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return request.result;
+    }
+
+    private boolean unchanged(Map<String, TopicDefinition> topics) {
+        var now = System.nanoTime();
+        var known = snapshot.filter((topic, t2) -> topics.containsKey(topic) && now - t2._2 < snapshotTtlNanos).mapValues(Tuple2::_1);
+        return known.size() == topics.size() && configurator.createPlan(known, topics, false, incrementPartitionCount, changeReplicationFactor).isEmpty();
+    }
+
+    private void reconcileBatch() {
+        List<Request> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        metrics.count("service_requests", batch.size());
+        metrics.count("service_batches", 1);
+        // a topic defined differently by requests of the same batch is left alone
+        var definitions = Vector.ofAll(batch).flatMap(request -> request.topics).groupBy(Tuple2::_1).mapValues(defs -> defs.map(Tuple2::_2).distinct());
+        var conflicting = definitions.filterValues(defs -> defs.size() > 1).keySet();
+        Map<String, TopicDefinition> merged = definitions.removeAll(conflicting).mapValues(defs -> defs.head());
+        Map<String, TopicResult> results;
+        try {
+            results = reconcile(merged).merge(conflicting.toMap(topic -> Tuple.of(topic, new TopicResult("failed", "conflicting definitions in concurrent requests"))));
+        } catch (RuntimeException e) {
+            LOG.error("reconciliation of {} topics failed", merged.size(), e);
+            var error = String.valueOf(unwrap(e).getMessage());
+            results = definitions.mapValues(defs -> new TopicResult("failed", error));
+        }
+        for (var request : batch) {
+            request.result.complete(results.filterKeys(request.topics::containsKey));
+        }
+    }
+
+    private Map<String, TopicResult> reconcile(Map<String, TopicDefinition> topics) {
+        var current = client.getExistingTopics(topics.keySet()).thenCompose(client::describe).join();
+        var plan = configurator.createPlan(current, topics, false, incrementPartitionCount, changeReplicationFactor);
+        Map<String, Try<Void>> outcomes = HashMap.empty();
+        if (!plan.isEmpty()) {
+            configurator.printPlan(plan);
+            outcomes = configurator.applyPlan(client, plan, dryRun);
+        }
+        // the changed topics are described again, so the snapshot holds their actual state
+        var affected = plan.affectedTopics();
+        var refreshed = affected.isEmpty() ? HashMap.<String, TopicState>empty() : client.getExistingTopics(affected).thenCompose(client::describe).join();
+        var now = System.nanoTime();
+        snapshot = snapshot.removeAll(affected).merge(current.removeAll(affected).merge(refreshed).mapValues(state -> Tuple.of(state, now)), (old, fresh) -> fresh);
+        var created = plan.getTopicsToCreate().map(NewTopic::name).toSet();
+        Set<String> updated = plan.getTopicsToUpdate().keySet().map(ConfigResource::name)
+                .addAll(plan.getPartitionCountsToUpdate().keySet())
+                .addAll(plan.getReplicationFactorsToUpdate().keySet());
+        Map<String, Try<Void>> applied = outcomes;
+        return topics.map((topic, definition) -> Tuple.of(topic, applied.get(topic)
+                .filter(Try::isFailure)
+                .map(failure -> new TopicResult("failed", String.valueOf(failure.getCause().getMessage())))
+                .getOrElse(() -> new TopicResult(created.contains(topic) ? "created" : updated.contains(topic) ? "updated" : "unchanged", null))));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, java.util.Map.of("error", "POST topic definitions to /topics"));
+                return;
+            }
+            TopicsJson body;
+            try {
+                body = MAPPER.readValue(exchange.getRequestBody(), TopicsJson.class);
+            } catch (IOException e) {
+                respond(exchange, 400, java.util.Map.of("error", String.valueOf(e.getMessage())));
+                return;
+            }
+            Map<String, TopicDefinition> topics = HashMap.ofAll(body.getTopics());
+            var schema = client.settings().getConfigSchema();
+            var problems = schema == null ? Vector.<String>empty() : schema.validate(topics);
+            if (!problems.isEmpty()) {
+                respond(exchange, 400, java.util.Map.of("errors", problems.toJavaList()));
+                return;
+            }
+            var results = ensure(topics).join();
+            var ok = results.values().forAll(result -> result.getError() == null);
+            respond(exchange, ok ? 200 : 500, java.util.Map.of("topics", results.toJavaMap()));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        var bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Throwable unwrap(Throwable th) {
+        return th instanceof CompletionException && th.getCause() != null ? th.getCause() : th;
+    }
+
+    @AllArgsConstructor
+    private static class Request {
+        final Map<String, TopicDefinition> topics;
+        final CompletableFuture<Map<String, TopicResult>> result;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class TopicsJson {
+        private java.util.Map<String, TopicDefinition> topics = java.util.Map.of();
+    }
+
+    // status is created, updated, unchanged or failed
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class TopicResult {
+        private String status;
+        private String error;
+    }
+}
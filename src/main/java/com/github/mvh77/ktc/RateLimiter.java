@@ -0,0 +1,67 @@
+package com.github.mvh77.ktc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket for topic mutations sent to the controller, holding at most a second worth of permits. Permits are
+ * reserved up front, so a request larger than the bucket waits for the deficit instead of failing. When the broker
+ * throttles a request nothing is sent until the throttle time is over, and the rate is halved. Every request that
+ * isn't throttled raises it again by a twentieth of the configured rate.
+ */
+class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRate;
+    private double rate;
+    private double available;
+    private long refilledAt = System.nanoTime();
+    private long pausedUntil = refilledAt;
+
+    // permits per second, not limited if zero or less
+    RateLimiter(double ratePerSecond) {
+        this.maxRate = ratePerSecond;
+        this.rate = ratePerSecond;
+        this.available = Math.max(1, ratePerSecond);
+    }
+
+    // completes once the permits may be used
+    CompletableFuture<Void> acquire(int permits) {
+        var waitNanos = reserve(permits, System.nanoTime());
+        return waitNanos <= 0
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    // the time to wait before using the permits
+    synchronized long reserve(int permits, long now) {
+        var pause = Math.max(0, pausedUntil - now);
+        if (maxRate <= 0) {
+            return pause;
+        }
+        available = Math.min(Math.max(1, rate), available + (now - refilledAt) * rate / NANOS_PER_SECOND);
+        refilledAt = now;
+        var deficit = permits - available;
+        available -= permits;
+        return Math.max(pause, deficit <= 0 ? 0 : (long) (deficit * NANOS_PER_SECOND / rate));
+    }
+
+    // the broker throttled a request for the given time
+    synchronized void throttled(long throttleTimeMs, long now) {
+        pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(throttleTimeMs));
+        if (maxRate > 0) {
+            rate = Math.max(maxRate / 20, rate / 2);
+        }
+    }
+
+    synchronized void succeeded() {
+        if (maxRate > 0) {
+            rate = Math.min(maxRate, rate + maxRate / 20);
+        }
+    }
+
+    synchronized double rate() {
+        return rate;
+    }
+}
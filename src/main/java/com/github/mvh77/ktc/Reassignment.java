@@ -0,0 +1,181 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.ConfigResource;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Changes replication factors by reassigning partitions, a wave of reassignmentWaveSize partitions at a time. The
+ * brokers taking part get a replication throttle for the whole run, the moving replicas are throttled per wave. The
+ * next wave only starts once listPartitionReassignments no longer reports any partition of the previous one. A wave
+ * still running after reassignmentTimeoutMs is cancelled and fails. All throttles are removed again when done, whether
+ * the reassignment succeeded or not.
+ */
+class Reassignment {
+
+    static final String LEADER_RATE = "leader.replication.throttled.rate";
+    static final String FOLLOWER_RATE = "follower.replication.throttled.rate";
+    static final String LEADER_REPLICAS = "leader.replication.throttled.replicas";
+    static final String FOLLOWER_REPLICAS = "follower.replication.throttled.replicas";
+
+    private static final Comparator<TopicPartition> PARTITION_ORDER = Comparator.comparing(TopicPartition::topic).thenComparing(TopicPartition::partition);
+
+    private final CustomAdminClient client;
+    private final ClientSettings settings;
+    private final Report report;
+
+    Reassignment(CustomAdminClient client, Report report) {
+        this.client = client;
+        this.settings = client.settings();
+        this.report = report;
+    }
+
+    // brings the topics to the given replication factors
+    CompletableFuture<Void> run(Map<String, Integer> replicationFactors) {
+        return client.getBrokers()
+                .thenCombine(client.getReplicaAssignments(replicationFactors.keySet()), (brokers, current) -> {
+                    var tooFew = replicationFactors.filterValues(r -> r > brokers.size()).keySet();
+                    if (!tooFew.isEmpty()) {
+                        throw new IllegalArgumentException("the cluster has " + brokers.size() + " brokers, can't change the replication factor of "
+                                + tooFew.toSortedSet().mkString(", "));
+                    }
+                    var target = assign(current, replicationFactors, brokers);
+                    return target.filter((tp, replicas) -> !replicas.equals(current.apply(tp)))
+                            .map((tp, replicas) -> Tuple.of(tp, Tuple.of(current.apply(tp), replicas)));
+                })
+                .thenCompose(this::runWaves);
+    }
+
+    private CompletableFuture<Void> runWaves(Map<TopicPartition, Tuple2<Seq<Integer>, Seq<Integer>>> moves) {
+        if (moves.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var waves = moves.toVector()
+                .sortBy(PARTITION_ORDER, Tuple2::_1)
+                .grouped(Math.max(1, settings.getReassignmentWaveSize()))
+                .map(HashMap::ofEntries)
+                .zipWithIndex()
+                .toVector();
+        // only partitions gaining replicas move data
+        var brokers = moves.values().filter(t2 -> !t2._2.removeAll(t2._1).isEmpty()).flatMap(t2 -> t2._1.appendAll(t2._2)).toSortedSet();
+        return withCleanup(client.doAlterConfigs(brokerThrottles(brokers, AlterConfigOp.OpType.SET))
+                        .thenCompose(nil -> CompletableFutures.traverse(waves.asJava(), wave -> runWave(wave._1, wave._2, waves.size()), 1))
+                        .thenApply(nil -> (Void) null),
+                () -> client.doAlterConfigs(brokerThrottles(brokers, AlterConfigOp.OpType.DELETE)));
+    }
+
+    private CompletableFuture<Void> runWave(Map<TopicPartition, Tuple2<Seq<Integer>, Seq<Integer>>> wave, int index, int waves) {
+        report.info("Reassignment wave " + (index + 1) + " of " + waves + ": " + wave.size() + " partitions");
+        return withCleanup(client.doAlterConfigs(replicaThrottles(wave, AlterConfigOp.OpType.APPEND))
+                        .thenCompose(nil -> client.doReassignPartitions(wave.mapValues(Tuple2::_2)))
+                        .thenCompose(nil -> awaitReassignments(wave.keySet(), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getReassignmentTimeoutMs()))),
+                () -> client.doAlterConfigs(replicaThrottles(wave, AlterConfigOp.OpType.SUBTRACT)));
+    }
+
+    private CompletableFuture<Void> awaitReassignments(Set<TopicPartition> partitions, long deadline) {
+        return client.getOngoingReassignments(partitions)
+                .thenCompose(ongoing -> {
+                    if (ongoing.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (System.nanoTime() >= deadline) {
+                        return cancel(ongoing);
+                    }
+                    return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(settings.getReassignmentPollMs(), TimeUnit.MILLISECONDS))
+                            .thenCompose(nil -> awaitReassignments(ongoing, deadline));
+                });
+    }
+
+    // a stuck reassignment would go on unthrottled once the throttles are removed, it is cancelled instead
+    private CompletableFuture<Void> cancel(Set<TopicPartition> ongoing) {
+        var partitions = ongoing.toSortedSet(PARTITION_ORDER).mkString(", ");
+        return client.doCancelReassignments(ongoing)
+                .handle((nil, th) -> CompletableFuture.<Void>failedFuture(new IllegalStateException("the reassignment of " + partitions + " didn't complete within "
+                        + settings.getReassignmentTimeoutMs() + " ms, " + (th == null ? "it was cancelled" : "cancelling it failed with " + th.getMessage()))))
+                .thenCompose(Function.identity());
+    }
+
+    private Map<ConfigResource, Collection<AlterConfigOp>> brokerThrottles(Set<Integer> brokers, AlterConfigOp.OpType opType) {
+        var rate = opType == AlterConfigOp.OpType.DELETE ? null : String.valueOf(settings.getReassignmentThrottleBytes());
+        Collection<AlterConfigOp> ops = Vector.of(LEADER_RATE, FOLLOWER_RATE)
+                .map(name -> new AlterConfigOp(new ConfigEntry(name, rate), opType))
+                .toJavaList();
+        return brokers.toMap(broker -> Tuple.of(new ConfigResource(ConfigResource.Type.BROKER, String.valueOf(broker)), ops));
+    }
+
+    // the current replicas lead the replication, the added ones follow
+    static Map<ConfigResource, Collection<AlterConfigOp>> replicaThrottles(Map<TopicPartition, Tuple2<Seq<Integer>, Seq<Integer>>> wave, AlterConfigOp.OpType opType) {
+        return wave.toVector()
+                .filter(t2 -> !t2._2._2.removeAll(t2._2._1).isEmpty())
+                .groupBy(t2 -> t2._1.topic())
+                .map((topic, moves) -> {
+                    var leaders = moves.flatMap(t2 -> t2._2._1.map(broker -> t2._1.partition() + ":" + broker)).mkString(",");
+                    var followers = moves.flatMap(t2 -> t2._2._2.removeAll(t2._2._1).map(broker -> t2._1.partition() + ":" + broker)).mkString(",");
+                    Collection<AlterConfigOp> ops = Vector.of(
+                            new AlterConfigOp(new ConfigEntry(LEADER_REPLICAS, leaders), opType),
+                            new AlterConfigOp(new ConfigEntry(FOLLOWER_REPLICAS, followers), opType)).toJavaList();
+                    return Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, topic), ops);
+                });
+    }
+
+    /**
+     * The new replicas of every partition of the topics. Current replicas are kept as far as possible, the preferred
+     * leader always. Added replicas go to the brokers with the fewest replicas of these topics, removed ones are taken
+     * from the brokers with the most.
+     */
+    static Map<TopicPartition, Seq<Integer>> assign(Map<TopicPartition, Seq<Integer>> current, Map<String, Integer> replicationFactors, Seq<Integer> brokers) {
+        var load = new java.util.HashMap<Integer, Integer>();
+        brokers.forEach(broker -> load.put(broker, 0));
+        current.values().forEach(replicas -> replicas.forEach(broker -> load.merge(broker, 1, Integer::sum)));
+        var assigned = new java.util.LinkedHashMap<TopicPartition, Seq<Integer>>();
+        for (var t2 : current.toVector().sortBy(PARTITION_ORDER, Tuple2::_1)) {
+            var partition = t2._1;
+            var replicas = t2._2;
+            int target = replicationFactors.apply(partition.topic());
+            while (replicas.size() < target) {
+                var candidates = replicas;
+                var added = brokers
+                        .filter(broker -> !candidates.contains(broker))
+                        // the partition number spreads ties over the brokers
+                        .minBy(Comparator.comparing((Integer broker) -> load.get(broker))
+                                .thenComparing(broker -> Math.floorMod(brokers.indexOf(broker) - partition.partition(), brokers.size())))
+                        .get();
+                load.merge(added, 1, Integer::sum);
+                replicas = replicas.append(added);
+            }
+            while (replicas.size() > target) {
+                var removed = replicas.tail().maxBy(Comparator.comparing(load::get)).get();
+                load.merge(removed, -1, Integer::sum);
+                replicas = replicas.remove(removed);
+            }
+            assigned.put(partition, replicas);
+        }
+        return HashMap.ofAll(assigned);
+    }
+
+    // the outcome of the future, after the cleanup ran whatever the outcome
+    private static <T> CompletableFuture<T> withCleanup(CompletableFuture<T> future, Supplier<CompletableFuture<?>> cleanup) {
+        return future
+                .handle((t, th) -> cleanup.get().handle((nil, cleanupTh) -> {
+                    if (th != null) return CompletableFuture.<T>failedFuture(th);
+                    else if (cleanupTh != null) return CompletableFuture.<T>failedFuture(cleanupTh);
+                    else return CompletableFuture.completedFuture(t);
+                }).thenCompose(Function.identity()))
+                .thenCompose(Function.identity());
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.control.Try;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Console output of a run. Output is buffered and only flushed at the end of a section, or before an error is written,
+ * so large clusters don't cost a synchronized write per line.
+ */
+abstract class Report {
+
+    enum Verbosity {
+        // counts and errors only
+        SUMMARY,
+        // the plan and the outcome of applying it
+        CHANGES,
+        // in addition the current configuration of every described topic
+        FULL
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final Verbosity verbosity;
+    protected final OutputStream target;
+    protected final Writer out;
+    protected final PrintStream err;
+    // name of the cluster the report is about when reconciling several, otherwise null
+    protected final String cluster;
+
+    protected Report(Verbosity verbosity, OutputStream target, PrintStream err, String cluster) {
+        this.verbosity = verbosity;
+        this.target = target;
+        this.out = new BufferedWriter(new OutputStreamWriter(cluster == null ? target : new SectionOutputStream(target), StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.err = err;
+        this.cluster = cluster;
+    }
+
+    static Report create(String format, Verbosity verbosity) {
+        return create(format, verbosity, System.out, System.err);
+    }
+
+    static Report create(String format, Verbosity verbosity, OutputStream out, PrintStream err) {
+        switch (format) {
+            case "text":
+                return new TextReport(verbosity, out, err, null);
+            case "ndjson":
+                return new NdjsonReport(verbosity, out, err, null);
+            default:
+                throw new IllegalArgumentException("unknown output format " + format);
+        }
+    }
+
+    // a report of the same format on the same streams about one of several clusters reconciled concurrently
+    abstract Report forCluster(String cluster);
+
+    abstract void currentTopics(Map<String, TopicState> topics);
+
+    abstract void outOfScope(Set<String> topics);
+
+    abstract void plan(Plan plan);
+
+    // action is the verb of the operation, create or update
+    abstract void applyResults(String action, Map<String, Try<Void>> results);
+
+    // the outcome of every cluster, true if it was reconciled without errors
+    abstract void clusters(Map<String, Boolean> results);
+
+    abstract void info(String message);
+
+    abstract void error(String message, Throwable... causes);
+
+    synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // holds everything written up to a flush and then writes it to the shared stream at once, so the sections of
+    // clusters reconciled concurrently don't interleave
+    private static class SectionOutputStream extends ByteArrayOutputStream {
+
+        private final OutputStream target;
+
+        SectionOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            synchronized (target) {
+                writeTo(target);
+                target.flush();
+            }
+            reset();
+        }
+    }
+}
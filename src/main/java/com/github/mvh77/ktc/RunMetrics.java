@@ -0,0 +1,195 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wall time per phase, admin request counts and latencies, topic counts and peaks like queue depths of a run. Thread safe, exported as JSON or
+ * in the Prometheus text format for the node exporter textfile collector.
+ */
+public class RunMetrics {
+
+    // upper bounds of the request latency buckets in milliseconds, the last bucket is unbounded
+    private static final long[] BUCKETS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final long started = System.nanoTime();
+    private final ConcurrentHashMap<String, LongAdder> phaseNanos = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> requests = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> peaks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RunMetrics> clusters = new ConcurrentHashMap<>();
+
+    public Timer startPhase(String phase) {
+        var start = System.nanoTime();
+        return () -> phaseNanos.computeIfAbsent(phase, p -> new LongAdder()).add(System.nanoTime() - start);
+    }
+
+    public void count(String name, long n) {
+        counts.computeIfAbsent(name, c -> new LongAdder()).add(n);
+    }
+
+    // keeps the highest value seen
+    public void peak(String name, long value) {
+        peaks.computeIfAbsent(name, p -> new AtomicLong()).accumulateAndGet(value, Math::max);
+    }
+
+    public void request(String api, long nanos, boolean success) {
+        requests.computeIfAbsent(api, a -> new Histogram()).record(nanos, success);
+    }
+
+    // the metrics of one cluster of a fan-out, exported apart so the phases of different clusters don't add up
+    public RunMetrics forCluster(String cluster) {
+        return clusters.computeIfAbsent(cluster, c -> new RunMetrics());
+    }
+
+    public void writeJson(String path) {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("wallSeconds", seconds(System.nanoTime() - started));
+        json.put("peakHeapBytes", peakHeap());
+        json.putAll(sections());
+        if (!clusters.isEmpty()) {
+            var clusterJson = new TreeMap<String, Object>();
+            clusters.forEach((cluster, metrics) -> clusterJson.put(cluster, metrics.sections()));
+            json.put("clusters", clusterJson);
+        }
+        write(path, out -> MAPPER.writeValue(out.toFile(), json));
+    }
+
+    private Map<String, Object> sections() {
+        var json = new LinkedHashMap<String, Object>();
+        var phases = new TreeMap<String, Double>();
+        phaseNanos.forEach((phase, nanos) -> phases.put(phase, seconds(nanos.sum())));
+        json.put("phaseSeconds", phases);
+        var countJson = new TreeMap<String, Long>();
+        counts.forEach((name, n) -> countJson.put(name, n.sum()));
+        json.put("counts", countJson);
+        var peakJson = new TreeMap<String, Long>();
+        peaks.forEach((name, peak) -> peakJson.put(name, peak.get()));
+        json.put("peaks", peakJson);
+        var requestJson = new TreeMap<String, Object>();
+        requests.forEach((api, histogram) -> requestJson.put(api, histogram.toJson()));
+        json.put("adminRequests", requestJson);
+        return json;
+    }
+
+    public void writePrometheus(String path) {
+        var sb = new StringBuilder();
+        sb.append("# HELP ktc_run_wall_seconds wall time of the run\n# TYPE ktc_run_wall_seconds gauge\n");
+        sb.append("ktc_run_wall_seconds ").append(seconds(System.nanoTime() - started)).append('\n');
+        sb.append("# HELP ktc_run_timestamp_seconds end of the run\n# TYPE ktc_run_timestamp_seconds gauge\n");
+        sb.append("ktc_run_timestamp_seconds ").append(System.currentTimeMillis() / 1000).append('\n');
+        sb.append("# HELP ktc_heap_peak_bytes peak heap usage of the run\n# TYPE ktc_heap_peak_bytes gauge\n");
+        sb.append("ktc_heap_peak_bytes ").append(peakHeap()).append('\n');
+        // the run's own series come first, then those of every cluster with a cluster label
+        var labelled = new LinkedHashMap<String, RunMetrics>();
+        labelled.put("", this);
+        new TreeMap<>(clusters).forEach((cluster, metrics) -> labelled.put("cluster=\"" + cluster + "\",", metrics));
+        sb.append("# HELP ktc_phase_seconds wall time per phase\n# TYPE ktc_phase_seconds gauge\n");
+        labelled.forEach((label, metrics) -> new TreeMap<>(metrics.phaseNanos).forEach((phase, nanos) ->
+                sb.append("ktc_phase_seconds{").append(label).append("phase=\"").append(phase).append("\"} ").append(seconds(nanos.sum())).append('\n')));
+        sb.append("# HELP ktc_count topic and operation counts\n# TYPE ktc_count gauge\n");
+        labelled.forEach((label, metrics) -> new TreeMap<>(metrics.counts).forEach((name, n) ->
+                sb.append("ktc_count{").append(label).append("name=\"").append(name).append("\"} ").append(n.sum()).append('\n')));
+        sb.append("# HELP ktc_peak highest values seen during the run\n# TYPE ktc_peak gauge\n");
+        labelled.forEach((label, metrics) -> new TreeMap<>(metrics.peaks).forEach((name, peak) ->
+                sb.append("ktc_peak{").append(label).append("name=\"").append(name).append("\"} ").append(peak.get()).append('\n')));
+        sb.append("# HELP ktc_admin_requests_total admin requests per api and outcome\n# TYPE ktc_admin_requests_total counter\n");
+        labelled.forEach((label, metrics) -> new TreeMap<>(metrics.requests).forEach((api, histogram) -> {
+            sb.append("ktc_admin_requests_total{").append(label).append("api=\"").append(api).append("\",outcome=\"success\"} ").append(histogram.successes.sum()).append('\n');
+            sb.append("ktc_admin_requests_total{").append(label).append("api=\"").append(api).append("\",outcome=\"failure\"} ").append(histogram.failures.sum()).append('\n');
+        }));
+        sb.append("# HELP ktc_admin_request_seconds admin request latency\n# TYPE ktc_admin_request_seconds histogram\n");
+        labelled.forEach((label, metrics) -> new TreeMap<>(metrics.requests).forEach((api, histogram) -> {
+            long cumulative = 0;
+            for (int i = 0; i <= BUCKETS_MS.length; i++) {
+                cumulative += histogram.buckets.get(i);
+                var le = i < BUCKETS_MS.length ? String.valueOf(BUCKETS_MS[i] / 1000.0) : "+Inf";
+                sb.append("ktc_admin_request_seconds_bucket{").append(label).append("api=\"").append(api).append("\",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append("ktc_admin_request_seconds_sum{").append(label).append("api=\"").append(api).append("\"} ").append(seconds(histogram.nanos.sum())).append('\n');
+            sb.append("ktc_admin_request_seconds_count{").append(label).append("api=\"").append(api).append("\"} ").append(cumulative).append('\n');
+        }));
+        write(path, out -> Files.writeString(out, sb));
+    }
+
+    // written next to the target and moved in place, so a collector never reads a partial file
+    private static void write(String path, IOConsumer<Path> writer) {
+        var target = Path.of(path).toAbsolutePath();
+        try {
+            var tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            writer.accept(tmp);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not write metrics to " + path, e);
+        }
+    }
+
+    private static long peakHeap() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    public interface Timer {
+        void stop();
+    }
+
+    private interface IOConsumer<T> {
+        void accept(T t) throws IOException;
+    }
+
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_MS.length + 1);
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void record(long nanos, boolean success) {
+            // compared in nanoseconds, 5.9 ms is above the 5 ms bound
+            var bucket = 0;
+            while (bucket < BUCKETS_MS.length && nanos > TimeUnit.MILLISECONDS.toNanos(BUCKETS_MS[bucket])) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            this.nanos.add(nanos);
+            (success ? successes : failures).increment();
+        }
+
+        Map<String, Object> toJson() {
+            var json = new LinkedHashMap<String, Object>();
+            json.put("successes", successes.sum());
+            json.put("failures", failures.sum());
+            json.put("totalSeconds", seconds(nanos.sum()));
+            var histogram = new LinkedHashMap<String, Long>();
+            for (int i = 0; i <= BUCKETS_MS.length; i++) {
+                histogram.put(i < BUCKETS_MS.length ? String.format(Locale.ROOT, "le%dms", BUCKETS_MS[i]) : "inf", buckets.get(i));
+            }
+            json.put("latencyBuckets", histogram);
+            return json;
+        }
+    }
+}
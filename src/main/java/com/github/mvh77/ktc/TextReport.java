@@ -0,0 +1,180 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.control.Try;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * The human readable report, in sections.
+ */
+class TextReport extends Report {
+
+    private final String prefix;
+
+    TextReport(Verbosity verbosity, OutputStream out, PrintStream err, String cluster) {
+        super(verbosity, out, err, cluster);
+        this.prefix = cluster == null ? "" : "[" + cluster + "] ";
+    }
+
+    @Override
+    Report forCluster(String cluster) {
+        return new TextReport(verbosity, target, err, cluster);
+    }
+
+    @Override
+    synchronized void currentTopics(Map<String, TopicState> topics) {
+        if (verbosity != Verbosity.FULL) {
+            println(topics.size() + " topics currently configured");
+            return;
+        }
+        header("- CURRENTLY CONFIGURED TOPICS -");
+        topics.toVector()
+                .sortBy(t2 -> t2._1)
+                .forEach(t2 -> {
+                    println(t2._1 + " (" + t2._2.getPartitions() + " partitions)");
+                    var configs = t2._2.getConfigs();
+                    for (int i = 0; i < configs.size(); i++) {
+                        var defaultIndicator = configs.isOverride(i) ? " (*)" : "";
+                        println("  " + configs.name(i) + ": " + configs.value(i) + defaultIndicator);
+                    }
+                });
+        println("");
+        flush();
+    }
+
+    @Override
+    synchronized void outOfScope(Set<String> topics) {
+        if (topics.isEmpty()) {
+            return;
+        }
+        if (verbosity == Verbosity.SUMMARY) {
+            println(topics.size() + " defined topics outside of scope");
+            return;
+        }
+        header("- DEFINED TOPICS OUTSIDE OF SCOPE -");
+        topics.toSortedSet().forEach(topic -> println("  " + topic));
+        println("");
+    }
+
+    @Override
+    synchronized void plan(Plan plan) {
+        if (verbosity == Verbosity.SUMMARY) {
+            println("Plan: " + plan.getTopicsToCreate().size() + " to create, "
+                    + plan.getTopicsToUpdate().size() + " to update (" + plan.getTopicsToUpdate().values().map(Collection::size).sum() + " config changes), "
+                    + plan.getPartitionCountsToUpdate().size() + " partition increases, "
+                    + plan.getReplicationFactorsToUpdate().size() + " replication changes, "
+                    + plan.getTopicsToDelete().size() + " to delete");
+            flush();
+            return;
+        }
+        header("- TOPICS TO CREATE -");
+        plan.getTopicsToCreate().forEach(nt -> println(nt.name()));
+        println("");
+        header("- TOPICS TO UPDATE -");
+        plan.getTopicsToUpdate().toVector().sortBy(t2 -> t2._1.name()).forEach(t2 -> {
+            println(t2._1.name());
+            t2._2.forEach(aco -> println("  " + aco.configEntry().name() + ": " + aco.configEntry().value() + " (" + aco.opType() + ")"));
+        });
+        println("");
+        if (!plan.getPartitionCountsToUpdate().isEmpty()) {
+            header("- PARTITION COUNTS TO INCREASE -");
+            plan.getPartitionCountsToUpdate().toVector().sortBy(t2 -> t2._1)
+                    .forEach(t2 -> println(t2._1 + " " + t2._2._1 + " -> " + t2._2._2));
+            println("");
+        }
+        if (!plan.getReplicationFactorsToUpdate().isEmpty()) {
+            header("- REPLICATION FACTORS TO CHANGE -");
+            plan.getReplicationFactorsToUpdate().toVector().sortBy(t2 -> t2._1)
+                    .forEach(t2 -> println(t2._1 + " " + t2._2._1 + " -> " + t2._2._2));
+            println("");
+        }
+        if (!plan.getTopicsToDelete().isEmpty()) {
+            header("- TOPICS TO DELETE -");
+            plan.getTopicsToDelete().toSortedSet().forEach(topic -> println("  " + topic));
+            println("");
+        }
+        flush();
+    }
+
+    @Override
+    synchronized void applyResults(String action, Map<String, Try<Void>> results) {
+        var failed = results.filterValues(Try::isFailure);
+        failed.keySet().toSortedSet().forEach(topic -> error("Could not " + verb(action) + " topic " + topic + " with", failed.apply(topic).getCause()));
+        println((results.size() - failed.size()) + " of " + results.size() + " topics " + pastParticiple(action));
+        flush();
+    }
+
+    // the action names are also used in the journal and the ndjson report, they don't always read as verbs
+    private static String verb(String action) {
+        switch (action) {
+            case "partitions":
+                return "increase the partition count of";
+            case "replication":
+                return "change the replication factor of";
+            default:
+                return action;
+        }
+    }
+
+    private static String pastParticiple(String action) {
+        switch (action) {
+            case "partitions":
+                return "repartitioned";
+            case "replication":
+                return "re-replicated";
+            default:
+                return action + "d";
+        }
+    }
+
+    @Override
+    synchronized void clusters(Map<String, Boolean> results) {
+        header("- CLUSTERS -");
+        results.toVector().sortBy(t2 -> t2._1).forEach(t2 -> println(t2._1 + ": " + (t2._2 ? "ok" : "FAILED")));
+        println((results.count(t2 -> t2._2)) + " of " + results.size() + " clusters reconciled");
+        flush();
+    }
+
+    @Override
+    synchronized void info(String message) {
+        println(message);
+        flush();
+    }
+
+    @Override
+    synchronized void error(String message, Throwable... causes) {
+        // keeps the order of stdout and stderr when both go to the same terminal
+        flush();
+        synchronized (err) {
+            err.println(prefix + message);
+            for (Throwable cause : causes) {
+                err.println(prefix + cause.getMessage());
+            }
+        }
+    }
+
+    // section headers are 72 characters wide, with the title centered
+    private void header(String title) {
+        var padding = 68 - title.length();
+        var left = padding / 2;
+        println("------------------------------------------------------------------------");
+        println("--" + " ".repeat(left) + title + " ".repeat(padding - left) + "--");
+        println("------------------------------------------------------------------------");
+    }
+
+    private void println(String s) {
+        try {
+            out.write(prefix);
+            out.write(s);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
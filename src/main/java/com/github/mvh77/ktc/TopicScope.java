@@ -0,0 +1,99 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import io.vavr.control.Option;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Restricts the topics the configurator looks at. A topic is in scope if it matches any of the configured criteria,
+ * when no criteria are configured every topic is in scope. A sharded scope further keeps only the topics hashed to its
+ * shard, so shardCount workers with shard indexes 0 to shardCount - 1 each look at a distinct share of the topics and
+ * together at all of them.
+ */
+public class TopicScope {
+
+    private final boolean definitions;
+    private final Vector<String> prefixes;
+    private final Option<Pattern> regex;
+    private final int shardIndex;
+    private final int shardCount;
+
+    public TopicScope(boolean definitions, String prefixes, String regex) {
+        this(definitions, prefixes == null ? Vector.empty() : Vector.of(prefixes.split(",")).filter(s -> !s.isEmpty()),
+                Option.of(regex).filter(s -> !s.isEmpty()).map(Pattern::compile), 0, 1);
+    }
+
+    private TopicScope(boolean definitions, Vector<String> prefixes, Option<Pattern> regex, int shardIndex, int shardCount) {
+        this.definitions = definitions;
+        this.prefixes = prefixes;
+        this.regex = regex;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    public static TopicScope all() {
+        return new TopicScope(false, null, null);
+    }
+
+    // the same scope restricted to one shard out of shardCount
+    public TopicScope sharded(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shard " + shardIndex + " out of " + shardCount + " doesn't exist");
+        }
+        return new TopicScope(definitions, prefixes, regex, shardIndex, shardCount);
+    }
+
+    boolean isAll() {
+        return !definitions && prefixes.isEmpty() && regex.isEmpty() && !isSharded();
+    }
+
+    boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+
+    boolean inShard(String topic) {
+        return !isSharded() || shardOf(topic, shardCount) == shardIndex;
+    }
+
+    Predicate<String> resolve(Set<String> definedTopics) {
+        if (isAll()) {
+            return topic -> true;
+        }
+        if (!definitions && prefixes.isEmpty() && regex.isEmpty()) {
+            return this::inShard;
+        }
+        return topic -> inShard(topic)
+                && ((definitions && definedTopics.contains(topic))
+                || prefixes.exists(topic::startsWith)
+                || regex.exists(p -> p.matcher(topic).matches()));
+    }
+
+    /**
+     * The shard of a topic, by jump consistent hashing of the murmur2 hash Kafka uses for record keys: it depends on
+     * nothing but the name, and going from n to n + 1 shards only moves about 1 / (n + 1) of the topics.
+     */
+    static int shardOf(String topic, int shardCount) {
+        long key = Utils.murmur2(topic.getBytes(StandardCharsets.UTF_8)) & 0xffffffffL;
+        long shard = -1;
+        long next = 0;
+        while (next < shardCount) {
+            shard = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((shard + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) shard;
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.mvh77.ktc;
+
+import lombok.Data;
+
+/**
+ * What the reconciliation needs to know about an existing topic. Replica assignments and ISRs are not kept.
+ */
+@Data
+class TopicState {
+
+    private final int partitions;
+    private final int replicationFactor;
+    private final ConfigProfile configs;
+}
@@ -0,0 +1,171 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.collection.Vector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the cluster in line with the definition files. Changed definitions are reconciled against the last described
+ * state of the cluster, a periodic drift check describes the whole scope again.
+ */
+class WatchDaemon {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WatchDaemon.class);
+    private static final long DEBOUNCE_MS = 500;
+
+    private final KafkaTopicConfigurator configurator;
+    private final CustomAdminClient client;
+    private final String definitions;
+    private final TopicScope scope;
+    private final boolean dryRun;
+    private final boolean removeTopics;
+    private final boolean noReplication;
+    private final boolean incrementPartitionCount;
+    private final boolean changeReplicationFactor;
+    // all reconciliation runs on this thread, the state below is only accessed from it
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // null until the definitions were read once, nothing is reconciled before that
+    private Map<String, TopicDefinition> definedTopics;
+    private Map<String, TopicState> described = HashMap.empty();
+
+    WatchDaemon(String bootstrap, String definitions, String extraProperties, ClientSettings settings, TopicScope scope, Report report,
+                boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        this(new RunMetrics(), bootstrap, definitions, extraProperties, settings, scope, report, dryRun, removeTopics, noReplication, incrementPartitionCount,
+                changeReplicationFactor);
+    }
+
+    private WatchDaemon(RunMetrics metrics, String bootstrap, String definitions, String extraProperties, ClientSettings settings, TopicScope scope, Report report,
+                        boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        this(new KafkaTopicConfigurator(metrics, report), new CustomAdminClient(bootstrap, extraProperties, settings, metrics), definitions, scope,
+                dryRun, removeTopics, noReplication, incrementPartitionCount, changeReplicationFactor);
+    }
+
+    WatchDaemon(KafkaTopicConfigurator configurator, CustomAdminClient client, String definitions, TopicScope scope,
+                boolean dryRun, boolean removeTopics, boolean noReplication, boolean incrementPartitionCount, boolean changeReplicationFactor) {
+        this.configurator = configurator;
+        this.client = client;
+        this.definitions = definitions;
+        this.scope = scope;
+        this.dryRun = dryRun;
+        this.removeTopics = removeTopics;
+        this.noReplication = noReplication;
+        this.incrementPartitionCount = incrementPartitionCount;
+        this.changeReplicationFactor = changeReplicationFactor;
+    }
+
+    /**
+     * Reconciles and watches until the process is stopped. Fails right away if the definitions can't be read, an empty
+     * set of definitions would have -removeTopics delete every topic in scope.
+     */
+    void run(long driftCheckIntervalSeconds) throws IOException, InterruptedException {
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            executor.shutdownNow();
+            client.close();
+        }));
+        executor.execute(() -> guarded("initial reconciliation", this::reconcileAll));
+        executor.scheduleWithFixedDelay(() -> guarded("drift check", this::reconcileAll), driftCheckIntervalSeconds, driftCheckIntervalSeconds, TimeUnit.SECONDS);
+        watch();
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        var files = Vector.of(definitions.split(","))
+                .filter(s -> !s.isEmpty())
+                .map(file -> Path.of(file).toAbsolutePath().normalize())
+                .toSet();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            for (Path dir : files.map(Path::getParent)) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            LOG.info("watching {}", files.mkString(", "));
+            while (!Thread.currentThread().isInterrupted()) {
+                var key = watchService.take();
+                // editors tend to touch a file several times on save, wait for them to settle
+                Thread.sleep(DEBOUNCE_MS);
+                var changed = false;
+                do {
+                    var dir = (Path) key.watchable();
+                    for (var event : key.pollEvents()) {
+                        if (event.context() instanceof Path && files.contains(dir.resolve((Path) event.context()))) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                } while ((key = watchService.poll()) != null);
+                if (changed) {
+                    executor.execute(() -> guarded("reconciliation of changed definitions", this::reconcileChanged));
+                }
+            }
+        }
+    }
+
+    // reads the definitions for the first time
+    void load() {
+        definedTopics = configurator.parseInput(definitions, noReplication).getOrElseThrow(() -> new IllegalArgumentException("could not read " + definitions));
+    }
+
+    // describes every topic in scope and reconciles all of them
+    void reconcileAll() {
+        var inScope = scope.resolve(definedTopics.keySet());
+        described = client.getTotalDescription(inScope).join();
+        apply(configurator.createPlan(described, definedTopics.filterKeys(inScope), removeTopics, incrementPartitionCount, changeReplicationFactor));
+    }
+
+    // reconciles the topics whose definitions changed against the last described state
+    void reconcileChanged() {
+        var parsed = configurator.parseInput(definitions, noReplication);
+        if (parsed.isEmpty()) {
+            LOG.warn("definitions could not be read, keeping the previous ones");
+            return;
+        }
+        var previous = definedTopics;
+        definedTopics = parsed.get();
+        var inScope = scope.resolve(definedTopics.keySet());
+        Set<String> changed = previous.keySet().addAll(definedTopics.keySet())
+                .filter(topic -> !previous.get(topic).equals(definedTopics.get(topic)))
+                .filter(inScope);
+        LOG.info("definitions changed for {} topics", changed.size());
+        if (!changed.isEmpty()) {
+            // topics which came into scope since the last describe may already exist, they'd be planned as creates
+            var missing = changed.removeAll(described.keySet());
+            if (!missing.isEmpty()) {
+                described = described.merge(client.getTotalDescription(missing::contains).join());
+            }
+            var current = described.filterKeys(changed::contains);
+            apply(configurator.createPlan(current, definedTopics.filterKeys(changed::contains), removeTopics, incrementPartitionCount, changeReplicationFactor));
+        }
+    }
+
+    private void apply(Plan plan) {
+        if (plan.isEmpty()) {
+            LOG.info("no changes");
+            return;
+        }
+        configurator.printPlan(plan);
+        configurator.applyPlan(client, plan, dryRun);
+        // refresh the affected topics so the next diff starts from their actual state
+        var affected = plan.affectedTopics();
+        var refreshed = client.getTotalDescription(affected::contains).join();
+        described = described.removeAll(affected).merge(refreshed);
+    }
+
+    private void guarded(String name, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOG.error("{} failed", name, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.List;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+public class ApplyJournalTest {
+
+    @Test
+    public void testPending() throws IOException {
+        Collection<AlterConfigOp> ops = List.of(new AlterConfigOp(new ConfigEntry("retention.ms", "1000"), AlterConfigOp.OpType.SET)).toJavaList();
+        var plan = new Plan(
+                Vector.of(new NewTopic("a", 3, (short) 2), new NewTopic("b", 3, (short) 2)),
+                HashMap.of(new ConfigResource(ConfigResource.Type.TOPIC, "c"), ops),
+                HashMap.of("c", HashMap.of("retention.ms", "2000")),
+                HashMap.of("d", Tuple.of(1, 6)),
+                HashMap.empty(),
+                HashSet.of("e", "f"));
+        var file = File.createTempFile("journal", ".ndjson");
+        file.deleteOnExit();
+
+        var journal = ApplyJournal.start(file.getPath(), plan);
+        journal.record("create", HashMap.of("a", Try.success(null), "b", Try.failure(new TimeoutException("no response"))));
+        journal.record("update", HashMap.of("c", Try.failure(new TimeoutException("no response"))));
+        journal.close();
+        journal = ApplyJournal.resume(file.getPath());
+        journal.record("update", HashMap.of("c", Try.success(null)));
+        journal.record("delete", HashMap.of("e", Try.success(null)));
+        journal.close();
+        // cut short by a crash
+        Files.writeString(file.toPath(), "{\"action\":\"delete\",\"topic\":\"f\",\"succ", StandardOpenOption.APPEND);
+
+        var pending = ApplyJournal.pending(file.getPath());
+
+        Assert.assertEquals(Vector.of("b"), pending.getTopicsToCreate().map(NewTopic::name));
+        Assert.assertTrue(pending.getTopicsToUpdate().isEmpty());
+        Assert.assertTrue(pending.getCurrentConfigs().isEmpty());
+        Assert.assertEquals(plan.getPartitionCountsToUpdate(), pending.getPartitionCountsToUpdate());
+        Assert.assertEquals(HashSet.of("f"), pending.getTopicsToDelete().toSet());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPlan() throws IOException {
+        var file = File.createTempFile("journal", ".ndjson");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "{\"action\":\"delete\",\"topic\":\"f\",\"success\":true}\n");
+
+        ApplyJournal.pending(file.getPath());
+    }
+}
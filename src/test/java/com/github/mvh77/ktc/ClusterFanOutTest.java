@@ -0,0 +1,78 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.LinkedHashMap;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.apache.kafka.common.KafkaException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+
+public class ClusterFanOutTest {
+
+    private final InMemoryAdmin eu = new InMemoryAdmin(3, 5);
+    private final InMemoryAdmin us = new InMemoryAdmin(3, 5);
+    private final LinkedHashMap<String, ClusterProfile> clusters = LinkedHashMap.of(
+            "eu", new ClusterProfile("eu:9092", null),
+            "us", new ClusterProfile("us:9092", null));
+    private final ClientSettings settings = new ClientSettings();
+    private final RunMetrics metrics = new RunMetrics();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private ClusterFanOut fanOut;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        us.addTopic("orders", 3, 3, Map.of("retention.ms", "2000"));
+        settings.setMutationRatePerSecond(0);
+        file = File.createTempFile("topics", ".yml");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "topics:\n" +
+                "  orders:\n" +
+                "    partitions: 3\n" +
+                "    replication: 3\n" +
+                "    config:\n" +
+                "      retention.ms: 2000\n");
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out));
+        fanOut = new ClusterFanOut(metrics, report,
+                (bootstrap, extraProperties, s, m) -> new CustomAdminClient(bootstrap.startsWith("eu") ? eu : us, s, m));
+    }
+
+    @Test
+    public void testOneClusterFails() {
+        us.rejectOnce("listTopics", new KafkaException("unreachable"));
+        Assert.assertFalse(execute());
+        Assert.assertEquals(Set.of("orders"), eu.topicNames());
+        var text = out.toString();
+        Assert.assertTrue(text, text.contains("eu: ok"));
+        Assert.assertTrue(text, text.contains("us: FAILED"));
+        Assert.assertTrue(text, text.contains("1 of 2 clusters reconciled"));
+    }
+
+    @Test
+    public void testMetricsPerCluster() throws IOException {
+        Assert.assertTrue(execute());
+        Assert.assertEquals(Set.of("orders"), eu.topicNames());
+        var file = Files.createTempFile("metrics", ".prom");
+        metrics.writePrometheus(file.toString());
+        var text = Files.readString(file);
+        Files.delete(file);
+        Assert.assertTrue(text, text.contains("ktc_phase_seconds{phase=\"parse\"}"));
+        Assert.assertTrue(text, text.contains("ktc_phase_seconds{cluster=\"eu\",phase=\"describe\"}"));
+        Assert.assertTrue(text, text.contains("ktc_phase_seconds{cluster=\"us\",phase=\"describe\"}"));
+        Assert.assertFalse(text, text.contains("ktc_phase_seconds{phase=\"describe\"}"));
+        Assert.assertTrue(text, text.contains("ktc_count{cluster=\"eu\",name=\"ops_create\"} 1\n"));
+        Assert.assertTrue(text, text.contains("ktc_count{cluster=\"us\",name=\"ops_create\"} 0\n"));
+    }
+
+    private boolean execute() {
+        return fanOut.execute(clusters, file.getPath(), settings, TopicScope.all(), 2, false, false, false, false, false);
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ClusterProfileTest {
+
+    @Test
+    public void testReadAll() throws IOException {
+        var file = Files.createTempFile("clusters", ".yml");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, "clusters:\n"
+                + "  us-prod:\n"
+                + "    bootstrap: kafka1.us:9092,kafka2.us:9092\n"
+                + "    extraProperties: us-prod.properties\n"
+                + "  eu-prod:\n"
+                + "    bootstrap: kafka1.eu:9092\n");
+
+        var clusters = ClusterProfile.readAll(file.toString());
+
+        Assert.assertEquals(List.of("us-prod", "eu-prod"), clusters.keySet().toList());
+        Assert.assertEquals(new ClusterProfile("kafka1.us:9092,kafka2.us:9092", "us-prod.properties"), clusters.apply("us-prod"));
+        Assert.assertEquals(new ClusterProfile("kafka1.eu:9092", null), clusters.apply("eu-prod"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingBootstrap() throws IOException {
+        var file = Files.createTempFile("clusters", ".yml");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, "clusters:\n  us-prod:\n    extraProperties: us-prod.properties\n");
+
+        ClusterProfile.readAll(file.toString());
+    }
+}
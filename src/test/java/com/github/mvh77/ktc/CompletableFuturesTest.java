@@ -3,10 +3,15 @@ package com.github.mvh77.ktc;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.failedFuture;
@@ -37,4 +42,66 @@ public class CompletableFuturesTest {
                 });
         latch.await();
     }
+
+    @Test
+    public void testTraverseBounded() {
+        var pending = new ArrayList<CompletableFuture<Integer>>();
+        var result = CompletableFutures.traverse(List.of(1, 2, 3, 4, 5), i -> {
+            var cf = new CompletableFuture<Integer>();
+            pending.add(cf);
+            return cf;
+        }, 2);
+        Assert.assertEquals(2, pending.size());
+        pending.get(1).complete(20);
+        Assert.assertEquals(3, pending.size());
+        pending.get(0).complete(10);
+        pending.get(2).complete(30);
+        pending.get(3).complete(40);
+        Assert.assertFalse(result.isDone());
+        pending.get(4).complete(50);
+        Assert.assertEquals(List.of(10, 20, 30, 40, 50), result.join());
+    }
+
+    @Test
+    public void testTraverseFailFast() {
+        var started = new AtomicInteger();
+        var result = CompletableFutures.traverse(List.of(1, 2, 3), i -> {
+            started.incrementAndGet();
+            return i == 1 ? failedFuture(new RuntimeException("foo")) : completedFuture(i);
+        }, 1);
+        Assert.assertTrue(result.isCompletedExceptionally());
+        Assert.assertEquals(1, started.get());
+    }
+
+    @Test
+    public void testTraverseCombined() throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        CompletableFutures.traverseCombined(List.of(1, 2, 3), i -> i == 2 ? completedFuture(i) : failedFuture(new RuntimeException("foo" + i)), 1)
+                .whenComplete((s, th) -> {
+                    Assert.assertEquals(2, ((CompletableFutures.AccumulatedThrowable) th).getAccumulatedExceptions().size());
+                    latch.countDown();
+                });
+        latch.await();
+    }
+
+    @Test
+    public void testTraverseSynchronous() {
+        var inputs = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        var result = CompletableFutures.traverse(inputs, CompletableFuture::completedFuture, 4).join();
+        Assert.assertEquals(inputs, result);
+    }
+
+    @Test
+    public void testTraverseExecutor() throws ExecutionException, InterruptedException {
+        var executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "completer"));
+        try {
+            var input = new CompletableFuture<Integer>();
+            var thread = CompletableFutures.traverse(List.of(1), i -> input, 1, executor)
+                    .thenApply(l -> Thread.currentThread().getName());
+            input.complete(1);
+            Assert.assertEquals("completer", thread.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.github.mvh77.ktc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+public class CompletionExecutorTest {
+
+    @Test
+    public void testPool() throws Exception {
+        var metrics = new RunMetrics();
+        var settings = new ClientSettings();
+        settings.setCompletionThreads(1);
+        var executor = CompletionExecutor.create(settings, metrics);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var blocked = CompletableFuture.runAsync(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, executor);
+        started.await();
+        var queued = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor);
+        var waiting = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor);
+        release.countDown();
+
+        Assert.assertEquals("ktc-completion-1", queued.join());
+        Assert.assertEquals("ktc-completion-1", waiting.join());
+        blocked.join();
+        executor.close();
+        // still completed after close, on the calling thread
+        Assert.assertEquals(Thread.currentThread().getName(), CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor).join());
+
+        var file = Files.createTempFile("metrics", ".json");
+        metrics.writeJson(file.toString());
+        var text = Files.readString(file);
+        Assert.assertTrue(text, text.contains("\"completion_queue_depth\" : 2"));
+        Assert.assertTrue(text, text.contains("\"completions\" : 4"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testDirect() {
+        var settings = new ClientSettings();
+        settings.setCompletionExecutor(CompletionExecutor.DIRECT);
+        var executor = CompletionExecutor.create(settings, new RunMetrics());
+
+        Assert.assertEquals(Thread.currentThread().getName(), CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor).join());
+    }
+}
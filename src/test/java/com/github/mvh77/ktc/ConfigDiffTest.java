@@ -0,0 +1,77 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntries;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.common.config.ConfigResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Random;
+
+public class ConfigDiffTest {
+
+    private static final List<String> NAMES = List.of("cleanup.policy", "retention.ms", "segment.ms", "min.insync.replicas", "max.message.bytes");
+    private static final List<ConfigEntry.ConfigSource> SOURCES = List.of(ConfigEntry.ConfigSource.DEFAULT_CONFIG,
+            ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG, ConfigEntry.ConfigSource.STATIC_BROKER_CONFIG);
+
+    @Test
+    public void testDeleteWhenDynamic() {
+        Map<String, Set<ConfigEntry>> current = HashMap.of("foo", HashSet.of(
+                ConfigEntries.of("retention.ms", "1000", ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG),
+                ConfigEntries.of("segment.ms", "2000", ConfigEntry.ConfigSource.DEFAULT_CONFIG),
+                ConfigEntries.of("cleanup.policy", "delete", ConfigEntry.ConfigSource.DEFAULT_CONFIG)));
+        var target = new TopicDefinition();
+        target.setConfig(java.util.Map.of("cleanup.policy", "compact", "unknown.config", "foo"));
+
+        var ops = ConfigDiff.diff(states(current), HashMap.of("foo", target)).apply(new ConfigResource(ConfigResource.Type.TOPIC, "foo"));
+
+        Assert.assertEquals(java.util.List.of(
+                new AlterConfigOp(new ConfigEntry("cleanup.policy", "compact"), AlterConfigOp.OpType.SET),
+                new AlterConfigOp(new ConfigEntry("retention.ms", null), AlterConfigOp.OpType.DELETE)), ops);
+    }
+
+    @Test
+    public void testSameAsMapOps() {
+        var random = new Random(42);
+        Map<String, Set<ConfigEntry>> current = HashMap.empty();
+        Map<String, TopicDefinition> target = HashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            var topic = "topic" + i;
+            if (random.nextInt(10) > 0) {
+                current = current.put(topic, NAMES.filter(n -> random.nextInt(5) > 0)
+                        .map(n -> ConfigEntries.of(n, String.valueOf(random.nextInt(3)), SOURCES.get(random.nextInt(SOURCES.size()))))
+                        .toSet());
+            }
+            if (random.nextInt(10) > 0) {
+                var definition = new TopicDefinition();
+                definition.setConfig(NAMES.append("unknown.config")
+                        .filter(n -> random.nextBoolean())
+                        .toJavaMap(n -> Tuple.of(n, String.valueOf(random.nextInt(3)))));
+                target = target.put(topic, definition);
+            }
+        }
+
+        Assert.assertEquals(viaMapOps(current, target), ConfigDiff.diff(states(current), target));
+    }
+
+    private static Map<String, TopicState> states(Map<String, Set<ConfigEntry>> current) {
+        var interner = new ConfigProfile.Interner();
+        return current.mapValues(entries -> new TopicState(1, 1, interner.intern(entries)));
+    }
+
+    private static Map<ConfigResource, Collection<AlterConfigOp>> viaMapOps(Map<String, Set<ConfigEntry>> current, Map<String, TopicDefinition> target) {
+        return target.keySet().retainAll(current.keySet())
+                .toMap(topic -> Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, topic), MapOps.toConfigOps(
+                        current.apply(topic).toMap(ce -> Tuple.of(ce.name(), ce)),
+                        target.apply(topic).getConfigMap())))
+                .filterValues(c -> !c.isEmpty());
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.List;
+import io.vavr.control.Option;
+import org.apache.kafka.clients.admin.ConfigEntries;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigProfileTest {
+
+    @Test
+    public void testSortedWithOverrides() {
+        var profile = new ConfigProfile.Interner().intern(List.of(
+                ConfigEntries.of("segment.ms", "2000", ConfigEntry.ConfigSource.DEFAULT_CONFIG),
+                ConfigEntries.of("retention.ms", "1000", ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG),
+                ConfigEntries.of("sasl.password", null, ConfigEntry.ConfigSource.STATIC_BROKER_CONFIG)));
+
+        Assert.assertEquals(3, profile.size());
+        Assert.assertEquals(List.of("retention.ms", "sasl.password", "segment.ms"), List.range(0, 3).map(profile::name));
+        Assert.assertTrue(profile.isOverride(0));
+        Assert.assertFalse(profile.isOverride(2));
+        Assert.assertEquals(Option.some("1000"), profile.get("retention.ms"));
+        Assert.assertEquals(Option.some(null), profile.get("sasl.password"));
+        Assert.assertEquals(Option.none(), profile.get("cleanup.policy"));
+    }
+
+    @Test
+    public void testInterned() {
+        var interner = new ConfigProfile.Interner();
+        var a = interner.intern(List.of(
+                ConfigEntries.of("retention.ms", new String("1000"), ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG),
+                ConfigEntries.of("segment.ms", "2000", ConfigEntry.ConfigSource.DEFAULT_CONFIG)));
+        var b = interner.intern(List.of(
+                ConfigEntries.of("segment.ms", "2000", ConfigEntry.ConfigSource.DEFAULT_CONFIG),
+                ConfigEntries.of("retention.ms", new String("1000"), ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG)));
+        var c = interner.intern(List.of(
+                ConfigEntries.of("retention.ms", "1000", ConfigEntry.ConfigSource.DEFAULT_CONFIG),
+                ConfigEntries.of("segment.ms", "2000", ConfigEntry.ConfigSource.DEFAULT_CONFIG)));
+
+        Assert.assertSame(a, b);
+        Assert.assertNotEquals(a, c);
+        Assert.assertSame(a.value(0), c.value(0));
+        Assert.assertEquals(2, interner.size());
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Vector;
+import org.apache.kafka.clients.admin.ConfigEntries;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+public class ConfigSchemaTest {
+
+    @Test
+    public void testValidate() {
+        var topics = HashMap.of(
+                "valid", definition(Map.of("cleanup.policy", "compact, delete", "retention.ms", "-1", "min.cleanable.dirty.ratio", "0.1",
+                        "preallocate", "TRUE", "compression.type", "lz4")),
+                "invalid", definition(Map.of("cleanup.policy", "compact,archive", "retention.ms", "-2", "segment.bytes", "3000000000",
+                        "min.cleanable.dirty.ratio", "1.5", "preallocate", "yes", "compression.type", "brotli", "retention.time", "1d")));
+
+        Assert.assertEquals(Vector.of(
+                "invalid: cleanup.policy must be one of compact, delete, was archive",
+                "invalid: compression.type must be one of uncompressed, zstd, lz4, snappy, gzip, producer, was brotli",
+                "invalid: min.cleanable.dirty.ratio must be between 0 and 1, was 1.5",
+                "invalid: preallocate must be true or false, was yes",
+                "invalid: retention.ms must be at least -1, was -2",
+                "invalid: unknown config retention.time",
+                "invalid: segment.bytes is out of range, was 3000000000"), ConfigSchema.builtIn().validate(topics));
+    }
+
+    @Test
+    public void testFromBroker() throws IOException {
+        var entries = Vector.of(
+                ConfigEntries.of("retention.ms", "604800000", ConfigEntry.ConfigSource.DEFAULT_CONFIG, ConfigEntry.ConfigType.LONG),
+                ConfigEntries.of("segment.ms", "604800000", ConfigEntry.ConfigSource.DEFAULT_CONFIG, ConfigEntry.ConfigType.UNKNOWN),
+                ConfigEntries.of("remote.storage.enable", "false", ConfigEntry.ConfigSource.DEFAULT_CONFIG, ConfigEntry.ConfigType.BOOLEAN));
+        var file = File.createTempFile("schema", ".json");
+        file.deleteOnExit();
+        ConfigSchema.fromBroker(entries, "localhost:9092").write(file.getPath());
+        var schema = ConfigSchema.read(file.getPath());
+
+        Assert.assertEquals("localhost:9092", schema.getSource());
+        Assert.assertEquals(Vector.of(
+                "topic: unknown config cleanup.policy",
+                "topic: remote.storage.enable must be true or false, was 1",
+                "topic: retention.ms must be at least -1, was -5",
+                "topic: segment.ms must be at least 1, was 0"), schema.validate(HashMap.of("topic",
+                definition(Map.of("retention.ms", "-5", "segment.ms", "0", "remote.storage.enable", "1", "cleanup.policy", "compact")))));
+    }
+
+    private static TopicDefinition definition(Map<String, String> config) {
+        var definition = new TopicDefinition();
+        definition.setConfig(config);
+        return definition;
+    }
+}
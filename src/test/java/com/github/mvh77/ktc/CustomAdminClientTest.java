@@ -0,0 +1,121 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.Vector;
+import io.vavr.control.Option;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.PolicyViolationException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+public class CustomAdminClientTest {
+
+    private final InMemoryAdmin cluster = new InMemoryAdmin(3, 5);
+    private final ClientSettings settings = new ClientSettings();
+
+    @Before
+    public void setUp() {
+        cluster.addTopic("orders", 6, 3, Map.of("retention.ms", "1000"));
+        cluster.addTopic("payments", 3, 3, Map.of());
+        cluster.addTopic("invoices", 2, 2, Map.of());
+        settings.setDescribeBatchSize(1);
+        settings.setDescribeMaxInFlight(1);
+    }
+
+    @Test
+    public void testDescribeInBatches() {
+        settings.setDescribeBatchSize(2);
+        var client = new CustomAdminClient(cluster, settings, new RunMetrics());
+        try {
+            var states = client.describe(HashSet.of("orders", "payments", "invoices")).join();
+            Assert.assertEquals(2, cluster.calls("describeConfigs"));
+            Assert.assertEquals(HashSet.of("orders", "payments", "invoices"), states.keySet());
+            Assert.assertEquals(6, states.apply("orders").getPartitions());
+            Assert.assertEquals(3, states.apply("orders").getReplicationFactor());
+            Assert.assertEquals(2, states.apply("invoices").getPartitions());
+            Assert.assertEquals(2, states.apply("invoices").getReplicationFactor());
+            Assert.assertEquals(Option.some("1000"), states.apply("orders").getConfigs().get("retention.ms"));
+            Assert.assertTrue(states.apply("orders").getConfigs().isOverride("retention.ms"));
+            Assert.assertFalse(states.apply("payments").getConfigs().isOverride("retention.ms"));
+            // topics without overrides share one profile, across batches
+            Assert.assertSame(states.apply("payments").getConfigs(), states.apply("invoices").getConfigs());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testDescribeRejected() {
+        cluster.rejectOnce("describeConfigs", new KafkaException("closing"));
+        var client = new CustomAdminClient(cluster, settings, new RunMetrics());
+        try {
+            client.describe(HashSet.of("orders", "payments", "invoices")).join();
+            Assert.fail("the describe succeeded without the configs of a topic");
+        } catch (CompletionException e) {
+            Assert.assertEquals("closing", e.getCause().getMessage());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testCreateInChunks() {
+        settings.setApplyChunkSize(2);
+        settings.setMutationRatePerSecond(0);
+        cluster.failOnce("t3", new PolicyViolationException("not allowed"));
+        var client = new CustomAdminClient(cluster, settings, new RunMetrics());
+        var chunkSizes = new ArrayList<Integer>();
+        try {
+            var newTopics = Vector.range(0, 5).map(i -> new NewTopic("t" + i, 1, (short) 3));
+            var results = client.doCreateTopics(newTopics, false, chunk -> {
+                synchronized (chunkSizes) {
+                    chunkSizes.add(chunk.size());
+                }
+            }).join();
+            Assert.assertEquals(3, cluster.calls("createTopics"));
+            // the failure is reported with its chunk, the other chunks complete
+            Assert.assertEquals(List.of(1, 2, 2), chunkSizes.stream().sorted().collect(Collectors.toList()));
+            Assert.assertEquals(HashSet.of("t0", "t1", "t2", "t4"), results.filter(t2 -> t2._2.isSuccess()).keySet());
+            Assert.assertEquals("not allowed", results.apply("t3").getCause().getMessage());
+            Assert.assertEquals(Set.of("orders", "payments", "invoices", "t0", "t1", "t2", "t4"), cluster.topicNames());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testUpdateInChunks() {
+        settings.setApplyChunkSize(2);
+        cluster.failOnce("payments", new PolicyViolationException("not allowed"));
+        var client = new CustomAdminClient(cluster, settings, new RunMetrics());
+        try {
+            var set = List.of(new AlterConfigOp(new ConfigEntry("retention.ms", "5000"), AlterConfigOp.OpType.SET));
+            var mods = HashSet.of("orders", "payments", "invoices")
+                    .toMap(topic -> Tuple.of(new ConfigResource(ConfigResource.Type.TOPIC, topic), (Collection<AlterConfigOp>) set));
+            var results = client.doUpdateTopics(mods, false, chunk -> {}).join();
+            Assert.assertEquals(2, cluster.calls("incrementalAlterConfigs"));
+            Assert.assertTrue(results.apply("orders").isSuccess());
+            Assert.assertTrue(results.apply("invoices").isSuccess());
+            Assert.assertEquals("not allowed", results.apply("payments").getCause().getMessage());
+            Assert.assertEquals(Map.of("retention.ms", "5000"), cluster.overrides("invoices"));
+            Assert.assertEquals(Map.of(), cluster.overrides("payments"));
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.Vector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+public class DefinitionLoaderTest {
+
+    @Test
+    public void testLoad() throws IOException {
+        var first = file("topics:\n" +
+                "  tmt.cdc.profiles.v1:\n" +
+                "    partitions: 60\n" +
+                "    replication: 3\n" +
+                "    config:\n" +
+                "      cleanup.policy: compact\n" +
+                "      segment.ms: 600000 # 10 min\n" +
+                "  tmt.defaults.v1:\n");
+        var second = file("topics:\n" +
+                "  tmt.cmd.requests.v1:\n" +
+                "    partitions: 6\n");
+        var empty = file("");
+
+        var topics = DefinitionLoader.load(Vector.of(first, second, empty)).get();
+
+        Assert.assertEquals(3, topics.size());
+        var profiles = topics.apply("tmt.cdc.profiles.v1");
+        Assert.assertEquals(60, profiles.getPartitions());
+        Assert.assertEquals(3, profiles.getReplication());
+        Assert.assertEquals(Map.of("cleanup.policy", "compact", "segment.ms", "600000"), profiles.getConfig());
+        Assert.assertEquals(new TopicDefinition(), topics.apply("tmt.defaults.v1"));
+        Assert.assertEquals(6, topics.apply("tmt.cmd.requests.v1").getPartitions());
+    }
+
+    @Test
+    public void testAnchors() throws IOException {
+        var file = file("topics:\n" +
+                "  orders: &compacted\n" +
+                "    partitions: 6\n" +
+                "    replication: 3\n" +
+                "    config: &compaction\n" +
+                "      cleanup.policy: compact\n" +
+                "      segment.ms: 600000\n" +
+                "  payments: *compacted\n" +
+                "  invoices:\n" +
+                "    <<: *compacted\n" +
+                "    partitions: 2\n" +
+                "  refunds:\n" +
+                "    replication: 2\n" +
+                "    config:\n" +
+                "      <<: *compaction\n" +
+                "      segment.ms: 60000\n");
+
+        var topics = DefinitionLoader.load(Vector.of(file)).get();
+
+        var compaction = Map.of("cleanup.policy", "compact", "segment.ms", "600000");
+        Assert.assertEquals(topics.apply("orders"), topics.apply("payments"));
+        Assert.assertEquals(6, topics.apply("payments").getPartitions());
+        Assert.assertEquals(compaction, topics.apply("payments").getConfig());
+        Assert.assertEquals(2, topics.apply("invoices").getPartitions());
+        Assert.assertEquals(3, topics.apply("invoices").getReplication());
+        Assert.assertEquals(compaction, topics.apply("invoices").getConfig());
+        Assert.assertEquals(1, topics.apply("refunds").getPartitions());
+        Assert.assertEquals(Map.of("cleanup.policy", "compact", "segment.ms", "60000"), topics.apply("refunds").getConfig());
+    }
+
+    @Test
+    public void testUnknownAlias() throws IOException {
+        var file = file("topics:\n  foo: *missing\n");
+
+        var errors = DefinitionLoader.load(Vector.of(file)).getLeft();
+
+        Assert.assertTrue(errors.head(), errors.head().contains("unknown alias missing"));
+    }
+
+    @Test
+    public void testDuplicate() throws IOException {
+        var first = file("topics:\n  foo:\n    partitions: 1\n");
+        var second = file("topics:\n  foo:\n    partitions: 2\n");
+
+        var errors = DefinitionLoader.load(Vector.of(first, second)).getLeft();
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.head().startsWith("topic foo is defined in both"));
+    }
+
+    @Test
+    public void testUnknownProperty() throws IOException {
+        var file = file("topics:\n  foo:\n    partition: 1\n");
+
+        var errors = DefinitionLoader.load(Vector.of(file)).getLeft();
+
+        Assert.assertTrue(errors.head().contains("unknown property partition for topic foo"));
+    }
+
+    private static String file(String content) throws IOException {
+        var file = File.createTempFile("topics", ".yml");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), content);
+        return file.getPath();
+    }
+}
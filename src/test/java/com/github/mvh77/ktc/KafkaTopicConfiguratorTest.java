@@ -0,0 +1,225 @@
+package com.github.mvh77.ktc;
+
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+
+public class KafkaTopicConfiguratorTest {
+
+    private static final String DEFINITIONS = "topics:\n" +
+            "  orders:\n" +
+            "    partitions: 6\n" +
+            "    replication: 3\n" +
+            "    config:\n" +
+            "      retention.ms: 2000\n" +
+            "      cleanup.policy: compact\n" +
+            "  payments:\n" +
+            "    partitions: 3\n" +
+            "    replication: 3\n" +
+            "  replicated:\n" +
+            "    partitions: 2\n" +
+            "    replication: 2\n" +
+            "  invoices:\n" +
+            "    partitions: 2\n" +
+            "    replication: 3\n" +
+            "    config:\n" +
+            "      segment.ms: 600000\n";
+
+    private final InMemoryAdmin cluster = new InMemoryAdmin(3, 5);
+    private final ClientSettings settings = new ClientSettings();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private KafkaTopicConfigurator configurator;
+
+    @Before
+    public void setUp() {
+        cluster.addTopic("orders", 3, 3, Map.of("retention.ms", "1000"));
+        cluster.addTopic("payments", 3, 3, Map.of());
+        cluster.addTopic("replicated", 2, 1, Map.of());
+        cluster.addTopic("legacy", 1, 3, Map.of());
+        settings.setMutationRatePerSecond(0);
+        settings.setReassignmentPollMs(10);
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out));
+        configurator = new KafkaTopicConfigurator(new RunMetrics(), report, (bootstrap, extraProperties, s, metrics) -> new CustomAdminClient(cluster, s, metrics));
+    }
+
+    @Test
+    public void testExecute() throws IOException {
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                false, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(6, cluster.partitions("orders"));
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+        Assert.assertEquals(2, cluster.replicationFactor("replicated"));
+        Assert.assertEquals(2, cluster.partitions("invoices"));
+        Assert.assertEquals(Map.of("segment.ms", "600000"), cluster.overrides("invoices"));
+        Assert.assertEquals(1, cluster.calls("createPartitions"));
+    }
+
+    // the apply blocks on its phases, it must not run on the thread completing the admin responses
+    @Test(timeout = 10000)
+    public void testExecuteDirectCompletions() throws IOException {
+        settings.setCompletionExecutor(CompletionExecutor.DIRECT);
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                false, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+    }
+
+    @Test(timeout = 10000)
+    public void testExecuteOneCompletionThread() throws IOException {
+        settings.setCompletionThreads(1);
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                false, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+    }
+
+    @Test
+    public void testExecuteInChunks() throws IOException {
+        settings.setStreamChunkSize(2);
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                false, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(6, cluster.partitions("orders"));
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+        Assert.assertEquals(2, cluster.replicationFactor("replicated"));
+        Assert.assertEquals(Map.of("segment.ms", "600000"), cluster.overrides("invoices"));
+        // legacy and orders, then payments and replicated
+        Assert.assertEquals(2, cluster.calls("describeConfigs"));
+    }
+
+    @Test
+    public void testExecuteSharded() throws IOException {
+        var definitions = file(DEFINITIONS);
+        for (int shard = 0; shard < 3; shard++) {
+            var ok = configurator.execute("in-memory", definitions, null, settings, TopicScope.all().sharded(shard, 3), null, null,
+                    false, true, false, true, true);
+            Assert.assertTrue(out.toString(), ok);
+        }
+
+        // together the shards did what a single run does, each topic described once
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(6, cluster.partitions("orders"));
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+        Assert.assertEquals(2, cluster.replicationFactor("replicated"));
+        Assert.assertEquals(Map.of("segment.ms", "600000"), cluster.overrides("invoices"));
+        Assert.assertFalse(out.toString(), out.toString().contains("outside of scope"));
+    }
+
+    @Test
+    public void testDryRun() throws IOException {
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                true, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "legacy"), cluster.topicNames());
+        Assert.assertEquals(3, cluster.partitions("orders"));
+        Assert.assertEquals(Map.of("retention.ms", "1000"), cluster.overrides("orders"));
+        Assert.assertEquals(1, cluster.replicationFactor("replicated"));
+        Assert.assertEquals(1, cluster.calls("createTopics"));
+    }
+
+    @Test(timeout = 5000)
+    public void testDryRunNotRateLimited() throws IOException {
+        // 20 creations at one per second would take 20 s if validateOnly requests were limited
+        settings.setMutationRatePerSecond(1);
+        var definitions = new StringBuilder("topics:\n");
+        for (int i = 0; i < 20; i++) {
+            definitions.append("  new-").append(i).append(":\n    partitions: 1\n");
+        }
+        var ok = configurator.execute("in-memory", file(definitions + DEFINITIONS.substring("topics:\n".length())), null, settings, TopicScope.all(), null, null,
+                true, false, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertFalse(cluster.exists("new-0"));
+    }
+
+    @Test
+    public void testDryRunValidatedLocally() throws IOException {
+        settings.setConfigSchema(ConfigSchema.builtIn());
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, null,
+                true, true, false, true, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(0, cluster.calls("createTopics"));
+        Assert.assertEquals(0, cluster.calls("incrementalAlterConfigs"));
+        Assert.assertTrue(out.toString(), out.toString().contains("1 of 1 topics created"));
+        Assert.assertTrue(out.toString(), out.toString().contains("1 of 1 topics updated"));
+
+        ok = configurator.execute("in-memory", file(DEFINITIONS.replace("segment.ms: 600000", "segment.ms: 0")), null, settings, TopicScope.all(), null, null,
+                false, true, false, true, true);
+
+        Assert.assertFalse(ok);
+        Assert.assertTrue(out.toString(), out.toString().contains("invoices: segment.ms must be at least 1, was 0"));
+        Assert.assertEquals(1, cluster.calls("listTopics"));
+    }
+
+    @Test
+    public void testDryRunOfPlanValidatedByBrokers() throws IOException {
+        // a plan file never went through the config schema, the brokers still validate its dry run
+        var plan = File.createTempFile("plan", ".json");
+        plan.deleteOnExit();
+        configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), plan.getPath(), null,
+                false, true, false, true, true);
+        settings.setConfigSchema(ConfigSchema.builtIn());
+        var ok = configurator.executePlan("in-memory", null, settings, plan.getPath(), null, true);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(1, cluster.calls("createTopics"));
+        Assert.assertEquals(1, cluster.calls("incrementalAlterConfigs"));
+        Assert.assertFalse(cluster.exists("invoices"));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        var journal = File.createTempFile("journal", ".ndjson");
+        journal.deleteOnExit();
+        cluster.failOnce("invoices", new TimeoutException("timed out"));
+        cluster.failOnce("legacy", new TimeoutException("timed out"));
+
+        var ok = configurator.execute("in-memory", file(DEFINITIONS), null, settings, TopicScope.all(), null, journal.getPath(),
+                false, true, false, true, false);
+
+        Assert.assertFalse(ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "legacy"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "2000", "cleanup.policy", "compact"), cluster.overrides("orders"));
+
+        // the first retry of the resumed run fails as well
+        cluster.failOnce("invoices", new TimeoutException("timed out"));
+        settings.setResumeBackoffMs(10);
+        ok = configurator.resume("in-memory", null, settings, journal.getPath(), false);
+
+        Assert.assertTrue(out.toString(), ok);
+        Assert.assertEquals(Set.of("orders", "payments", "replicated", "invoices"), cluster.topicNames());
+        Assert.assertEquals(3, cluster.calls("createTopics"));
+        Assert.assertEquals(1, cluster.calls("incrementalAlterConfigs"));
+        Assert.assertEquals(1, cluster.calls("createPartitions"));
+        Assert.assertTrue(configurator.resume("in-memory", null, settings, journal.getPath(), false));
+        Assert.assertEquals(3, cluster.calls("createTopics"));
+    }
+
+    private static String file(String content) throws IOException {
+        var file = File.createTempFile("topics", ".yml");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), content);
+        return file.getPath();
+    }
+}
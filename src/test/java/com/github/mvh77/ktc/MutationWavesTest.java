@@ -0,0 +1,77 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Set;
+
+public class MutationWavesTest {
+
+    private final InMemoryAdmin cluster = new InMemoryAdmin(3, 1);
+    private final ClientSettings settings = new ClientSettings();
+    private MutationWaves waves;
+
+    @Before
+    public void setUp() {
+        for (var topic : Set.of("a", "b", "c", "d", "e")) {
+            cluster.addTopic(topic, 1, 1, Map.of());
+        }
+        settings.setMutationRatePerSecond(0);
+        settings.setMutationWaveSize(2);
+        settings.setMutationConfirmPollMs(10);
+        var out = new ByteArrayOutputStream();
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out));
+        waves = new MutationWaves(new CustomAdminClient(cluster, settings, new RunMetrics()), report);
+    }
+
+    @After
+    public void tearDown() {
+        cluster.shutdown();
+    }
+
+    @Test
+    public void testDeleteWaitsForMetadata() {
+        cluster.metadataDelay(50);
+
+        var results = waves.delete(HashSet.of("a", "b", "c", "d", "e")).join();
+
+        Assert.assertEquals(5, results.size());
+        Assert.assertTrue(results.toString(), results.values().forAll(result -> result.isSuccess()));
+        Assert.assertEquals(3, cluster.calls("deleteTopics"));
+        // every wave polls until its deletions propagated
+        Assert.assertTrue(cluster.calls("listTopics") > 3);
+        Assert.assertEquals(Set.of(), cluster.topicNames());
+    }
+
+    @Test
+    public void testIncreasePartitions() {
+        cluster.metadataDelay(30);
+
+        var results = waves.increasePartitions(HashMap.of("a", 3, "b", 2, "c", 4)).join();
+
+        Assert.assertTrue(results.toString(), results.values().forAll(result -> result.isSuccess()));
+        Assert.assertEquals(2, cluster.calls("createPartitions"));
+        Assert.assertEquals(3, cluster.partitions("a"));
+        Assert.assertEquals(4, cluster.partitions("c"));
+    }
+
+    @Test
+    public void testUnconfirmedFails() {
+        cluster.metadataDelay(10_000);
+        settings.setMutationConfirmTimeoutMs(50);
+
+        var results = waves.delete(HashSet.of("a", "b", "c")).join();
+
+        Assert.assertTrue(results.values().forAll(result -> result.isFailure() && result.getCause() instanceof IllegalStateException));
+        Assert.assertEquals("the change of a didn't show in the metadata within 50 ms", results.apply("a").getCause().getMessage());
+        Assert.assertEquals(2, cluster.calls("deleteTopics"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.Map;
+import io.vavr.collection.Set;
+import io.vavr.control.Try;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PhaseSchedulerTest {
+
+    @Test
+    public void testConflictingTopicsWait() {
+        var scheduler = new PhaseScheduler();
+        var first = new CompletableFuture<Map<String, Try<Void>>>();
+        var started = new ArrayList<Set<String>>();
+
+        var update = scheduler.schedule(HashSet.of("a", "b"), true, topics -> first);
+        var partitions = scheduler.schedule(HashSet.of("b", "c"), true, topics -> succeeded(started, topics));
+
+        Assert.assertEquals(List.of(HashSet.of("c")), started);
+        Assert.assertFalse(partitions.isDone());
+        first.complete(HashSet.of("a", "b").toMap(topic -> Tuple.of(topic, Try.success(null))));
+        Assert.assertEquals(List.of(HashSet.of("c"), HashSet.of("b")), started);
+        Assert.assertEquals(HashSet.of("a", "b"), update.join().keySet());
+        Assert.assertEquals(HashSet.of("b", "c"), partitions.join().keySet());
+    }
+
+    @Test
+    public void testUnsplitPhaseWaitsForAll() {
+        var scheduler = new PhaseScheduler();
+        var first = new CompletableFuture<Map<String, Try<Void>>>();
+        var started = new ArrayList<Set<String>>();
+
+        scheduler.schedule(HashSet.of("a"), true, topics -> first);
+        var replication = scheduler.schedule(HashSet.of("a", "b"), false, topics -> succeeded(started, topics));
+
+        Assert.assertTrue(started.isEmpty());
+        first.completeExceptionally(new IllegalStateException("boom"));
+        Assert.assertEquals(List.of(HashSet.of("a", "b")), started);
+        Assert.assertTrue(replication.join().values().forAll(Try::isSuccess));
+    }
+
+    @Test
+    public void testFailedBatchFailsItsTopics() {
+        var scheduler = new PhaseScheduler();
+
+        var results = scheduler.schedule(HashSet.of("a", "b"), true, topics -> {
+            throw new IllegalStateException("boom");
+        }).join();
+
+        Assert.assertEquals(HashSet.of("a", "b"), results.keySet());
+        Assert.assertEquals("boom", results.apply("a").getCause().getMessage());
+    }
+
+    private static CompletableFuture<Map<String, Try<Void>>> succeeded(List<Set<String>> started, Set<String> topics) {
+        started.add(topics);
+        return CompletableFuture.completedFuture(topics.toMap(topic -> Tuple.of(topic, Try.success(null))));
+    }
+}
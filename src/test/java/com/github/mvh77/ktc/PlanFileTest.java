@@ -0,0 +1,49 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.List;
+import io.vavr.collection.Vector;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+public class PlanFileTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        var resource = new ConfigResource(ConfigResource.Type.TOPIC, "bar");
+        Collection<AlterConfigOp> ops = List.of(
+                new AlterConfigOp(new ConfigEntry("retention.ms", "1000"), AlterConfigOp.OpType.SET),
+                new AlterConfigOp(new ConfigEntry("segment.ms", null), AlterConfigOp.OpType.DELETE)).toJavaList();
+        var plan = new Plan(
+                Vector.of(new NewTopic("foo", 3, (short) 2).configs(Map.of("cleanup.policy", "compact"))),
+                HashMap.of(resource, ops),
+                HashMap.of("bar", HashMap.of("retention.ms", "2000", "segment.ms", "600000")),
+                HashMap.of("baz", Tuple.of(1, 6)),
+                HashMap.of("quux", Tuple.of(2, 3)),
+                HashSet.of("qux"));
+
+        var file = File.createTempFile("plan", ".json");
+        file.deleteOnExit();
+        PlanFile.write(plan, file.getPath());
+        var read = PlanFile.read(file.getPath());
+
+        Assert.assertEquals(plan.getTopicsToCreate(), read.getTopicsToCreate());
+        Assert.assertEquals(List.ofAll(ops), List.ofAll(read.getTopicsToUpdate().apply(resource)));
+        Assert.assertEquals(plan.getCurrentConfigs(), read.getCurrentConfigs());
+        Assert.assertEquals(plan.getPartitionCountsToUpdate(), read.getPartitionCountsToUpdate());
+        Assert.assertEquals(plan.getReplicationFactorsToUpdate(), read.getReplicationFactorsToUpdate());
+        Assert.assertEquals(plan.getTopicsToDelete(), read.getTopicsToDelete());
+        Assert.assertEquals(HashSet.of("foo", "bar", "baz", "quux", "qux"), read.affectedTopics());
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.HashMap;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+public class ProvisioningServiceTest {
+
+    private final InMemoryAdmin cluster = new InMemoryAdmin(3, 5);
+    private ProvisioningService service;
+
+    @Before
+    public void setUp() {
+        cluster.addTopic("orders", 3, 3, Map.of("retention.ms", "1000"));
+        var settings = new ClientSettings();
+        settings.setMutationRatePerSecond(0);
+        var metrics = new RunMetrics();
+        var out = new ByteArrayOutputStream();
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out));
+        service = new ProvisioningService(new KafkaTopicConfigurator(metrics, report), new CustomAdminClient(cluster, settings, metrics), metrics,
+                50, 60000, false, true, false);
+    }
+
+    @After
+    public void tearDown() {
+        service.stop();
+        cluster.shutdown();
+    }
+
+    @Test
+    public void testCoalescing() {
+        var first = service.ensure(HashMap.of("payments", definition(3, Map.of())));
+        var second = service.ensure(HashMap.of("invoices", definition(2, Map.of()), "orders", definition(3, Map.of("retention.ms", "2000"))));
+        var conflicting = service.ensure(HashMap.of("invoices", definition(4, Map.of())));
+
+        Assert.assertEquals("created", first.join().apply("payments").getStatus());
+        Assert.assertEquals("failed", second.join().apply("invoices").getStatus());
+        Assert.assertEquals("updated", second.join().apply("orders").getStatus());
+        Assert.assertEquals("conflicting definitions in concurrent requests", conflicting.join().apply("invoices").getError());
+        Assert.assertEquals(1, cluster.calls("createTopics"));
+        Assert.assertEquals(1, cluster.calls("incrementalAlterConfigs"));
+        Assert.assertEquals(Map.of("retention.ms", "2000"), cluster.overrides("orders"));
+        Assert.assertFalse(cluster.exists("invoices"));
+    }
+
+    @Test
+    public void testSnapshot() {
+        Assert.assertEquals("created", service.ensure(HashMap.of("payments", definition(3, Map.of()))).join().apply("payments").getStatus());
+        var listed = cluster.calls("listTopics");
+        var described = cluster.calls("describeConfigs");
+
+        var again = service.ensure(HashMap.of("payments", definition(3, Map.of()))).join();
+
+        Assert.assertEquals("unchanged", again.apply("payments").getStatus());
+        Assert.assertEquals(listed, cluster.calls("listTopics"));
+        Assert.assertEquals(described, cluster.calls("describeConfigs"));
+        // a change still goes to the brokers
+        Assert.assertEquals("updated", service.ensure(HashMap.of("payments", definition(6, Map.of()))).join().apply("payments").getStatus());
+        Assert.assertEquals(6, cluster.partitions("payments"));
+    }
+
+    @Test
+    public void testHttp() throws Exception {
+        service.start(0);
+        var http = HttpClient.newHttpClient();
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/topics"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"topics\": {\"payments\": {\"partitions\": 3, \"replication\": 2, \"config\": {\"cleanup.policy\": \"compact\"}}}}"))
+                .build();
+
+        var response = http.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("{\"topics\":{\"payments\":{\"status\":\"created\"}}}", response.body());
+        Assert.assertEquals(2, cluster.replicationFactor("payments"));
+        var invalid = http.send(HttpRequest.newBuilder(request.uri()).POST(HttpRequest.BodyPublishers.ofString("{\"topic\": {}}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(400, invalid.statusCode());
+    }
+
+    private static TopicDefinition definition(int partitions, Map<String, String> config) {
+        var definition = new TopicDefinition();
+        definition.setPartitions(partitions);
+        definition.setReplication(3);
+        definition.setConfig(config);
+        return definition;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.mvh77.ktc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBudget() {
+        var limiter = new RateLimiter(10);
+        var now = System.nanoTime();
+        Assert.assertEquals(0, limiter.reserve(10, now));
+        Assert.assertEquals(500 * MS, limiter.reserve(5, now));
+        // the deficit is paid back before the bucket fills up again
+        Assert.assertEquals(0, limiter.reserve(10, now + 1500 * MS));
+        Assert.assertEquals(100 * MS, limiter.reserve(1, now + 1500 * MS));
+    }
+
+    @Test
+    public void testThrottled() {
+        var limiter = new RateLimiter(10);
+        var now = System.nanoTime();
+        limiter.throttled(200, now);
+        Assert.assertEquals(5, limiter.rate(), 0.001);
+        Assert.assertEquals(200 * MS, limiter.reserve(1, now));
+        Assert.assertEquals(0, limiter.reserve(1, now + 200 * MS));
+        for (int i = 0; i < 5; i++) {
+            limiter.throttled(0, now);
+        }
+        Assert.assertEquals(0.5, limiter.rate(), 0.001);
+        for (int i = 0; i < 30; i++) {
+            limiter.succeeded();
+        }
+        Assert.assertEquals(10, limiter.rate(), 0.001);
+    }
+
+    @Test
+    public void testUnlimited() {
+        var limiter = new RateLimiter(0);
+        var now = System.nanoTime();
+        Assert.assertEquals(0, limiter.reserve(10_000, now));
+        limiter.throttled(100, now);
+        Assert.assertEquals(100 * MS, limiter.reserve(10_000, now));
+        Assert.assertEquals(0, limiter.reserve(10_000, now + 100 * MS));
+    }
+}
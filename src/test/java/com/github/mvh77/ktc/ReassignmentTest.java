@@ -0,0 +1,94 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+import io.vavr.collection.Vector;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.ConfigResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CompletionException;
+
+public class ReassignmentTest {
+
+    private static final Seq<Integer> BROKERS = Vector.of(1, 2, 3, 4);
+
+    @Test
+    public void testIncreaseSpreadsOverBrokers() {
+        Map<TopicPartition, Seq<Integer>> current = HashMap.of(
+                new TopicPartition("foo", 0), Vector.of(1),
+                new TopicPartition("foo", 1), Vector.of(2),
+                new TopicPartition("foo", 2), Vector.of(1),
+                new TopicPartition("foo", 3), Vector.of(2));
+
+        var assigned = Reassignment.assign(current, HashMap.of("foo", 3), BROKERS);
+
+        current.forEach((tp, replicas) -> {
+            Assert.assertEquals(3, assigned.apply(tp).size());
+            Assert.assertEquals(3, assigned.apply(tp).distinct().size());
+            Assert.assertEquals(replicas.head(), assigned.apply(tp).head());
+        });
+        var load = assigned.values().flatMap(r -> r).groupBy(b -> b).mapValues(Seq::size);
+        Assert.assertEquals(BROKERS.toSet(), load.keySet());
+        Assert.assertTrue(load.values().max().get() - load.values().min().get() <= 2);
+    }
+
+    @Test
+    public void testDecreaseKeepsPreferredLeader() {
+        Map<TopicPartition, Seq<Integer>> current = HashMap.of(
+                new TopicPartition("foo", 0), Vector.of(1, 2, 3),
+                new TopicPartition("foo", 1), Vector.of(2, 3, 1));
+
+        var assigned = Reassignment.assign(current, HashMap.of("foo", 1), BROKERS);
+
+        Assert.assertEquals(Vector.of(1), assigned.apply(new TopicPartition("foo", 0)));
+        Assert.assertEquals(Vector.of(2), assigned.apply(new TopicPartition("foo", 1)));
+    }
+
+    @Test
+    public void testReplicaThrottles() {
+        var wave = HashMap.of(
+                new TopicPartition("foo", 0), Tuple.<Seq<Integer>, Seq<Integer>>of(Vector.of(1), Vector.of(1, 3)),
+                new TopicPartition("bar", 1), Tuple.<Seq<Integer>, Seq<Integer>>of(Vector.of(2, 3), Vector.of(2)));
+
+        var throttles = Reassignment.replicaThrottles(wave, AlterConfigOp.OpType.APPEND);
+
+        Assert.assertEquals(HashMap.of(new ConfigResource(ConfigResource.Type.TOPIC, "foo"), List.of(
+                new AlterConfigOp(new ConfigEntry(Reassignment.LEADER_REPLICAS, "0:1"), AlterConfigOp.OpType.APPEND),
+                new AlterConfigOp(new ConfigEntry(Reassignment.FOLLOWER_REPLICAS, "0:3"), AlterConfigOp.OpType.APPEND))),
+                throttles.mapValues(List::ofAll));
+    }
+
+    @Test(timeout = 5000)
+    public void testStuckReassignmentCancelled() {
+        var cluster = new InMemoryAdmin(3, 5);
+        cluster.addTopic("foo", 2, 1, java.util.Map.of());
+        cluster.stallReassignments();
+        var settings = new ClientSettings();
+        settings.setReassignmentPollMs(10);
+        settings.setReassignmentTimeoutMs(50);
+        var out = new ByteArrayOutputStream();
+        var client = new CustomAdminClient(cluster, settings, new RunMetrics());
+        try {
+            new Reassignment(client, Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out))).run(HashMap.of("foo", 2)).join();
+            Assert.fail("the stuck reassignment succeeded");
+        } catch (CompletionException e) {
+            Assert.assertEquals("the reassignment of foo-0, foo-1 didn't complete within 50 ms, it was cancelled", e.getCause().getMessage());
+        } finally {
+            client.close();
+        }
+        Assert.assertEquals(1, cluster.replicationFactor("foo"));
+        Assert.assertEquals("", cluster.overrides("foo").get(Reassignment.LEADER_REPLICAS));
+        Assert.assertEquals("", cluster.overrides("foo").get(Reassignment.FOLLOWER_REPLICAS));
+        Assert.assertEquals(2, cluster.calls("alterPartitionReassignments"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.mvh77.ktc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.Tuple;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.HashSet;
+import io.vavr.collection.List;
+import io.vavr.collection.Vector;
+import io.vavr.control.Try;
+import org.apache.kafka.clients.admin.AlterConfigOp;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.ConfigResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+public class ReportTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    public void testTextChanges() {
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(err, true));
+        report.plan(plan());
+        report.applyResults("create", HashMap.of("foo", Try.success(null), "bar", Try.failure(new IllegalStateException("exists"))));
+
+        var text = out.toString(StandardCharsets.UTF_8);
+        Assert.assertTrue(text.startsWith("------------------------------------------------------------------------\n"
+                + "--                        - TOPICS TO CREATE -                        --\n"
+                + "------------------------------------------------------------------------\n"
+                + "foo\n"));
+        Assert.assertTrue(text.contains("bar\n  retention.ms: 1000 (SET)\n"));
+        Assert.assertTrue(text.contains("baz 1 -> 6\n"));
+        Assert.assertTrue(text.endsWith("1 of 2 topics created\n"));
+        Assert.assertEquals("Could not create topic bar with\nexists\n", err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTextPartitions() {
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(err, true));
+        report.applyResults("partitions", HashMap.of("foo", Try.success(null), "bar", Try.failure(new IllegalStateException("too few"))));
+
+        Assert.assertEquals("1 of 2 topics repartitioned\n", out.toString(StandardCharsets.UTF_8));
+        Assert.assertEquals("Could not increase the partition count of topic bar with\ntoo few\n", err.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTextSummary() {
+        var report = Report.create("text", Report.Verbosity.SUMMARY, out, new PrintStream(err, true));
+        report.plan(plan());
+        Assert.assertEquals("Plan: 1 to create, 1 to update (1 config changes), 1 partition increases, 1 replication changes, 1 to delete\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        var report = Report.create("ndjson", Report.Verbosity.CHANGES, out, new PrintStream(err, true));
+        report.plan(plan());
+        report.error("oops", new IllegalStateException("cause"));
+
+        var mapper = new ObjectMapper();
+        var lines = List.of(out.toString(StandardCharsets.UTF_8).split("\n"));
+        var events = lines.map(line -> Try.of(() -> mapper.readTree(line)).get());
+        Assert.assertEquals(List.of("create", "update", "partitions", "replication", "delete", "plan", "error"), events.map(e -> e.get("type").asText()));
+        Assert.assertEquals("retention.ms", events.get(1).get("config").asText());
+        Assert.assertEquals(6, events.get(2).get("to").asInt());
+        Assert.assertEquals(3, events.get(3).get("to").asInt());
+        Assert.assertEquals(1, events.get(5).get("configChanges").asInt());
+        Assert.assertEquals("cause", events.get(6).get("causes").get(0).asText());
+        Assert.assertEquals(0, err.size());
+    }
+
+    @Test
+    public void testClusters() throws Exception {
+        var report = Report.create("ndjson", Report.Verbosity.SUMMARY, out, new PrintStream(err, true));
+        var eu = report.forCluster("eu-prod");
+        var us = report.forCluster("us-prod");
+        eu.info("from eu");
+        us.info("from us");
+        report.clusters(HashMap.of("eu-prod", true, "us-prod", false));
+
+        var mapper = new ObjectMapper();
+        var events = List.of(out.toString(StandardCharsets.UTF_8).split("\n")).map(line -> Try.of(() -> mapper.readTree(line)).get());
+        Assert.assertEquals(List.of("eu-prod", "us-prod"), events.take(2).map(e -> e.get("cluster").asText()));
+        Assert.assertEquals(List.of(true, false), events.drop(2).map(e -> e.get("success").asBoolean()));
+    }
+
+    @Test
+    public void testTextClusterPrefix() {
+        var report = Report.create("text", Report.Verbosity.SUMMARY, out, new PrintStream(err, true)).forCluster("eu-prod");
+        report.info("Plan written");
+        report.error("oops");
+        Assert.assertEquals("[eu-prod] Plan written\n", out.toString(StandardCharsets.UTF_8));
+        Assert.assertEquals("[eu-prod] oops\n", err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Plan plan() {
+        Collection<AlterConfigOp> ops = List.of(new AlterConfigOp(new ConfigEntry("retention.ms", "1000"), AlterConfigOp.OpType.SET)).toJavaList();
+        return new Plan(
+                Vector.of(new NewTopic("foo", 3, (short) 2)),
+                HashMap.of(new ConfigResource(ConfigResource.Type.TOPIC, "bar"), ops),
+                HashMap.of("bar", HashMap.of("retention.ms", "2000")),
+                HashMap.of("baz", Tuple.of(1, 6)),
+                HashMap.of("baz", Tuple.of(2, 3)),
+                HashSet.of("qux"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.mvh77.ktc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+
+public class RunMetricsTest {
+
+    @Test
+    public void testPrometheus() throws Exception {
+        var metrics = new RunMetrics();
+        metrics.startPhase("describe").stop();
+        metrics.count("topics_described", 3);
+        metrics.peak("completion_queue_depth", 4);
+        metrics.peak("completion_queue_depth", 2);
+        metrics.request("describeConfigs", 7_000_000, true);
+        metrics.request("describeConfigs", 60_000_000_000L, false);
+        var file = Files.createTempFile("metrics", ".prom");
+        metrics.writePrometheus(file.toString());
+        var text = Files.readString(file);
+        Assert.assertTrue(text.contains("ktc_phase_seconds{phase=\"describe\"}"));
+        Assert.assertTrue(text.contains("ktc_count{name=\"topics_described\"} 3\n"));
+        Assert.assertTrue(text.contains("ktc_peak{name=\"completion_queue_depth\"} 4\n"));
+        Assert.assertTrue(text.contains("ktc_admin_requests_total{api=\"describeConfigs\",outcome=\"failure\"} 1\n"));
+        Assert.assertTrue(text.contains("ktc_admin_request_seconds_bucket{api=\"describeConfigs\",le=\"0.005\"} 0\n"));
+        Assert.assertTrue(text.contains("ktc_admin_request_seconds_bucket{api=\"describeConfigs\",le=\"0.01\"} 1\n"));
+        Assert.assertTrue(text.contains("ktc_admin_request_seconds_bucket{api=\"describeConfigs\",le=\"+Inf\"} 2\n"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testBucketBounds() throws Exception {
+        var metrics = new RunMetrics();
+        metrics.request("createTopics", 5_000_000, true);
+        metrics.request("createTopics", 5_900_000, true);
+        var file = Files.createTempFile("metrics", ".prom");
+        metrics.writePrometheus(file.toString());
+        var text = Files.readString(file);
+        Assert.assertTrue(text.contains("ktc_admin_request_seconds_bucket{api=\"createTopics\",le=\"0.005\"} 1\n"));
+        Assert.assertTrue(text.contains("ktc_admin_request_seconds_bucket{api=\"createTopics\",le=\"0.01\"} 2\n"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        var metrics = new RunMetrics();
+        metrics.count("topics_to_create", 2);
+        metrics.count("topics_to_create", 1);
+        var file = Files.createTempFile("metrics", ".json");
+        metrics.writeJson(file.toString());
+        var text = Files.readString(file);
+        Assert.assertTrue(text.contains("\"topics_to_create\" : 3"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testClusters() throws Exception {
+        var metrics = new RunMetrics();
+        metrics.startPhase("parse").stop();
+        metrics.forCluster("eu").count("topics_described", 3);
+        metrics.forCluster("us").count("topics_described", 5);
+        metrics.forCluster("eu").count("topics_described", 1);
+        var file = Files.createTempFile("metrics", ".json");
+        metrics.writeJson(file.toString());
+        var text = Files.readString(file);
+        Assert.assertTrue(text.contains("\"clusters\""));
+        Assert.assertTrue(text.contains("\"topics_described\" : 4"));
+        Assert.assertTrue(text.contains("\"topics_described\" : 5"));
+        Files.delete(file);
+    }
+}
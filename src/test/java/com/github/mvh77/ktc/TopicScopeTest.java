@@ -0,0 +1,58 @@
+package com.github.mvh77.ktc;
+
+import io.vavr.collection.HashSet;
+import io.vavr.collection.Vector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TopicScopeTest {
+
+    @Test
+    public void testAll() {
+        var scope = TopicScope.all().resolve(HashSet.of("foo"));
+        Assert.assertTrue(scope.test("foo"));
+        Assert.assertTrue(scope.test("bar"));
+    }
+
+    @Test
+    public void testCombined() {
+        var scope = new TopicScope(true, "team.a.,team.b.", "legacy-[0-9]+").resolve(HashSet.of("foo"));
+        Assert.assertTrue(scope.test("foo"));
+        Assert.assertTrue(scope.test("team.b.events"));
+        Assert.assertTrue(scope.test("legacy-12"));
+        Assert.assertFalse(scope.test("legacy-12.v2"));
+        Assert.assertFalse(scope.test("bar"));
+    }
+
+    @Test
+    public void testShards() {
+        var topics = Vector.range(0, 10000).map(i -> "topic-" + i);
+        var shards = Vector.range(0, 4).map(index -> TopicScope.all().sharded(index, 4).resolve(HashSet.empty()));
+        // every topic in exactly one shard, the shards of about equal size
+        Assert.assertTrue(topics.forAll(topic -> shards.count(shard -> shard.test(topic)) == 1));
+        shards.forEach(shard -> Assert.assertEquals(2500, topics.count(shard), 250));
+    }
+
+    @Test
+    public void testShardedCriteria() {
+        var scope = new TopicScope(false, "team.a.", null).sharded(1, 2).resolve(HashSet.empty());
+        var inShard = Vector.range(0, 100).map(i -> "team.a." + i).filter(topic -> TopicScope.shardOf(topic, 2) == 1);
+        Assert.assertFalse(inShard.isEmpty());
+        Assert.assertTrue(inShard.forAll(scope));
+        Assert.assertFalse(scope.test("bar"));
+    }
+
+    @Test
+    public void testResharding() {
+        // going from 4 to 5 shards only moves the topics ending up in the new shard
+        var topics = Vector.range(0, 10000).map(i -> "topic-" + i);
+        var moved = topics.filter(topic -> TopicScope.shardOf(topic, 4) != TopicScope.shardOf(topic, 5));
+        Assert.assertTrue(moved.forAll(topic -> TopicScope.shardOf(topic, 5) == 4));
+        Assert.assertEquals(2000, moved.size(), 250);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingShard() {
+        TopicScope.all().sharded(2, 2);
+    }
+}
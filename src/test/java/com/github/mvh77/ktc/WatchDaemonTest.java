@@ -0,0 +1,116 @@
+package com.github.mvh77.ktc;
+
+import org.apache.kafka.clients.admin.InMemoryAdmin;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+
+public class WatchDaemonTest {
+
+    private static final String DEFINITIONS = "topics:\n" +
+            "  orders:\n" +
+            "    partitions: 3\n" +
+            "    replication: 3\n" +
+            "    config:\n" +
+            "      retention.ms: 2000\n";
+
+    private final InMemoryAdmin cluster = new InMemoryAdmin(3, 5);
+    private final ClientSettings settings = new ClientSettings();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        cluster.addTopic("orders", 3, 3, Map.of("retention.ms", "1000"));
+        cluster.addTopic("legacy", 1, 3, Map.of());
+        settings.setMutationRatePerSecond(0);
+        file = File.createTempFile("topics", ".yml");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), DEFINITIONS);
+    }
+
+    @Test
+    public void testUnreadableDefinitionsAtStart() throws Exception {
+        Files.writeString(file.toPath(), "topics: [");
+        try {
+            daemon().run(1);
+            Assert.fail("the daemon started without definitions");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(file.getPath()));
+        }
+        Assert.assertEquals(Set.of("orders", "legacy"), cluster.topicNames());
+        Assert.assertEquals(0, cluster.calls("deleteTopics"));
+    }
+
+    @Test
+    public void testChangedDefinitions() throws IOException {
+        var daemon = daemon();
+        daemon.load();
+        daemon.reconcileAll();
+        Assert.assertEquals(Set.of("orders"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "2000"), cluster.overrides("orders"));
+
+        Files.writeString(file.toPath(), DEFINITIONS.replace("2000", "3000") +
+                "  invoices:\n" +
+                "    partitions: 2\n" +
+                "    replication: 3\n");
+        daemon.reconcileChanged();
+        Assert.assertEquals(Set.of("orders", "invoices"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "3000"), cluster.overrides("orders"));
+        Assert.assertEquals(2, cluster.partitions("invoices"));
+    }
+
+    @Test
+    public void testDrift() throws IOException {
+        var daemon = daemon();
+        daemon.load();
+        daemon.reconcileAll();
+        cluster.addTopic("orders", 3, 3, Map.of("retention.ms", "5000"));
+        cluster.addTopic("stray", 1, 3, Map.of());
+
+        // unreadable definitions keep the previous ones, the drift check doesn't take them for an empty set
+        Files.writeString(file.toPath(), "topics: [");
+        daemon.reconcileChanged();
+        daemon.reconcileAll();
+        Assert.assertEquals(Set.of("orders"), cluster.topicNames());
+        Assert.assertEquals(Map.of("retention.ms", "2000"), cluster.overrides("orders"));
+    }
+
+    @Test
+    public void testExistingTopicDefined() throws IOException {
+        var daemon = daemon(new TopicScope(true, null, null));
+        daemon.load();
+        daemon.reconcileAll();
+
+        // legacy wasn't in scope at the last describe, it's updated rather than created
+        Files.writeString(file.toPath(), DEFINITIONS +
+                "  legacy:\n" +
+                "    partitions: 1\n" +
+                "    replication: 3\n" +
+                "    config:\n" +
+                "      retention.ms: 4000\n");
+        daemon.reconcileChanged();
+        Assert.assertEquals(0, cluster.calls("createTopics"));
+        Assert.assertEquals(Map.of("retention.ms", "4000"), cluster.overrides("legacy"));
+        Assert.assertFalse(out.toString(), out.toString().contains("already exists"));
+    }
+
+    private WatchDaemon daemon() {
+        return daemon(TopicScope.all());
+    }
+
+    private WatchDaemon daemon(TopicScope scope) {
+        var metrics = new RunMetrics();
+        var report = Report.create("text", Report.Verbosity.CHANGES, out, new PrintStream(out));
+        return new WatchDaemon(new KafkaTopicConfigurator(metrics, report), new CustomAdminClient(cluster, settings, metrics), file.getPath(),
+                scope, false, true, false, true, true);
+    }
+}
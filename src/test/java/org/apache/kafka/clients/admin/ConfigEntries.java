@@ -0,0 +1,17 @@
+package org.apache.kafka.clients.admin;
+
+import java.util.List;
+
+/**
+ * Creates config entries with a source, the constructor taking one isn't public in kafka-clients.
+ */
+public class ConfigEntries {
+
+    public static ConfigEntry of(String name, String value, ConfigEntry.ConfigSource source) {
+        return of(name, value, source, ConfigEntry.ConfigType.UNKNOWN);
+    }
+
+    public static ConfigEntry of(String name, String value, ConfigEntry.ConfigSource source, ConfigEntry.ConfigType type) {
+        return new ConfigEntry(name, value, source, false, false, List.of(), type, null);
+    }
+}
@@ -0,0 +1,536 @@
+package org.apache.kafka.clients.admin;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.ElectionType;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.TopicPartitionReplica;
+import org.apache.kafka.common.acl.AclBinding;
+import org.apache.kafka.common.acl.AclBindingFilter;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.InvalidPartitionsException;
+import org.apache.kafka.common.errors.InvalidReplicationFactorException;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.apache.kafka.common.quota.ClientQuotaAlteration;
+import org.apache.kafka.common.quota.ClientQuotaFilter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An in-process stand-in for a cluster, supporting the calls the configurator makes. Every call takes effect at once,
+ * its futures are completed after the given latency on a single thread, like the network thread of the real admin
+ * client. Partition reassignments complete immediately unless stalled, replication throttles are accepted but have no
+ * effect.
+ */
+public class InMemoryAdmin implements Admin {
+
+    // topic level configs of a 2.7 broker with their defaults
+    public static final Map<String, String> DEFAULTS = new TreeMap<>(Map.ofEntries(
+            Map.entry("cleanup.policy", "delete"),
+            Map.entry("compression.type", "producer"),
+            Map.entry("delete.retention.ms", "86400000"),
+            Map.entry("file.delete.delay.ms", "60000"),
+            Map.entry("flush.messages", "9223372036854775807"),
+            Map.entry("flush.ms", "9223372036854775807"),
+            Map.entry("follower.replication.throttled.replicas", ""),
+            Map.entry("index.interval.bytes", "4096"),
+            Map.entry("leader.replication.throttled.replicas", ""),
+            Map.entry("max.compaction.lag.ms", "9223372036854775807"),
+            Map.entry("max.message.bytes", "1048588"),
+            Map.entry("message.downconversion.enable", "true"),
+            Map.entry("message.format.version", "2.7-IV2"),
+            Map.entry("message.timestamp.difference.max.ms", "9223372036854775807"),
+            Map.entry("message.timestamp.type", "CreateTime"),
+            Map.entry("min.cleanable.dirty.ratio", "0.5"),
+            Map.entry("min.compaction.lag.ms", "0"),
+            Map.entry("min.insync.replicas", "1"),
+            Map.entry("preallocate", "false"),
+            Map.entry("retention.bytes", "-1"),
+            Map.entry("retention.ms", "604800000"),
+            Map.entry("segment.bytes", "1073741824"),
+            Map.entry("segment.index.bytes", "10485760"),
+            Map.entry("segment.jitter.ms", "0"),
+            Map.entry("segment.ms", "604800000"),
+            Map.entry("unclean.leader.election.enable", "false")));
+
+    private final List<Node> brokers;
+    private final long latencyMs;
+    private final ScheduledExecutorService network = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "in-memory-admin");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+    private final Map<String, RuntimeException> rejections = new ConcurrentHashMap<>();
+    // deleted topics and partition counts before an increase, still in the metadata until the given nano time
+    private final Map<String, Long> deleted = new ConcurrentHashMap<>();
+    private final Map<String, long[]> previousCounts = new ConcurrentHashMap<>();
+    private volatile long metadataDelayNanos;
+    // target replicas of the reassignments that don't progress, when stalled
+    private final Map<TopicPartition, List<Integer>> stalled = new ConcurrentHashMap<>();
+    private volatile boolean stallReassignments;
+
+    private static class Topic {
+        final List<List<Integer>> replicas;
+        final Map<String, String> overrides;
+
+        Topic(List<List<Integer>> replicas, Map<String, String> overrides) {
+            this.replicas = replicas;
+            this.overrides = overrides;
+        }
+    }
+
+    public InMemoryAdmin(int brokers, long latencyMs) {
+        this.brokers = IntStream.range(0, brokers).mapToObj(id -> new Node(id, "broker" + id, 9092)).collect(Collectors.toList());
+        this.latencyMs = latencyMs;
+    }
+
+    public synchronized void addTopic(String name, int partitions, int replicationFactor, Map<String, String> overrides) {
+        deleted.remove(name);
+        topics.put(name, new Topic(assignment(0, partitions, replicationFactor), new HashMap<>(overrides)));
+    }
+
+    public boolean exists(String topic) {
+        return topics.containsKey(topic);
+    }
+
+    public synchronized int partitions(String topic) {
+        return topics.get(topic).replicas.size();
+    }
+
+    public synchronized int replicationFactor(String topic) {
+        return topics.get(topic).replicas.get(0).size();
+    }
+
+    public synchronized Map<String, String> overrides(String topic) {
+        return new TreeMap<>(topics.get(topic).overrides);
+    }
+
+    public Set<String> topicNames() {
+        return Set.copyOf(topics.keySet());
+    }
+
+    // the next create, config change, partition increase or deletion of the topic fails with the error
+    public void failOnce(String topic, RuntimeException error) {
+        failures.put(topic, error);
+    }
+
+    // the next call of the admin api throws the error instead of returning futures, like a closing client
+    public void rejectOnce(String api, RuntimeException error) {
+        rejections.put(api, error);
+    }
+
+    // deletions and partition increases only show in listTopics and describeTopics after the delay
+    public void metadataDelay(long delayMs) {
+        metadataDelayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+    }
+
+    // reassignments stay ongoing until they are cancelled
+    public void stallReassignments() {
+        stallReassignments = true;
+    }
+
+    // number of requests made per admin api
+    public long calls(String api) {
+        return calls.getOrDefault(api, new AtomicLong()).get();
+    }
+
+    @Override
+    public synchronized CreateTopicsResult createTopics(Collection<NewTopic> newTopics, CreateTopicsOptions options) {
+        call("createTopics");
+        var futures = new HashMap<String, KafkaFuture<CreateTopicsResult.TopicMetadataAndConfig>>();
+        for (var nt : newTopics) {
+            futures.put(nt.name(), respond(() -> {
+                injectedFailure(nt.name());
+                if (topics.containsKey(nt.name())) {
+                    throw new TopicExistsException("Topic '" + nt.name() + "' already exists.");
+                }
+                if (nt.replicationFactor() > brokers.size()) {
+                    throw new InvalidReplicationFactorException("Replication factor: " + nt.replicationFactor() + " larger than available brokers: " + brokers.size() + ".");
+                }
+                if (!options.shouldValidateOnly()) {
+                    deleted.remove(nt.name());
+                    topics.put(nt.name(), new Topic(assignment(0, nt.numPartitions(), nt.replicationFactor()), new HashMap<>(nt.configs() == null ? Map.of() : nt.configs())));
+                }
+                return new CreateTopicsResult.TopicMetadataAndConfig(nt.numPartitions(), nt.replicationFactor(), null);
+            }));
+        }
+        return new CreateTopicsResult(futures);
+    }
+
+    @Override
+    public synchronized AlterConfigsResult incrementalAlterConfigs(Map<ConfigResource, Collection<AlterConfigOp>> configs, AlterConfigsOptions options) {
+        call("incrementalAlterConfigs");
+        var futures = new HashMap<ConfigResource, KafkaFuture<Void>>();
+        configs.forEach((resource, ops) -> futures.put(resource, respond(() -> {
+            if (resource.type() != ConfigResource.Type.TOPIC) {
+                return null;
+            }
+            injectedFailure(resource.name());
+            var overrides = new HashMap<>(topic(resource.name()).overrides);
+            for (var op : ops) {
+                var name = op.configEntry().name();
+                var value = op.configEntry().value();
+                switch (op.opType()) {
+                    case SET: overrides.put(name, value); break;
+                    case DELETE: overrides.remove(name); break;
+                    case APPEND: overrides.merge(name, value, (a, b) -> a.isEmpty() ? b : a + "," + b); break;
+                    case SUBTRACT:
+                        var remaining = new ArrayList<>(Arrays.asList(overrides.getOrDefault(name, "").split(",")));
+                        remaining.removeAll(Arrays.asList(value.split(",")));
+                        overrides.put(name, String.join(",", remaining));
+                        break;
+                }
+            }
+            if (!options.shouldValidateOnly()) {
+                topic(resource.name()).overrides.clear();
+                topic(resource.name()).overrides.putAll(overrides);
+            }
+            return null;
+        })));
+        return new AlterConfigsResult(futures);
+    }
+
+    @Override
+    public synchronized CreatePartitionsResult createPartitions(Map<String, NewPartitions> newPartitions, CreatePartitionsOptions options) {
+        call("createPartitions");
+        var futures = new HashMap<String, KafkaFuture<Void>>();
+        newPartitions.forEach((name, np) -> futures.put(name, respond(() -> {
+            injectedFailure(name);
+            var topic = topic(name);
+            var current = topic.replicas.size();
+            if (np.totalCount() <= current) {
+                throw new InvalidPartitionsException("Topic currently has " + current + " partitions, which is higher than the requested " + np.totalCount() + ".");
+            }
+            if (!options.validateOnly()) {
+                previousCounts.put(name, new long[]{current, System.nanoTime() + metadataDelayNanos});
+                topic.replicas.addAll(assignment(current, np.totalCount() - current, topic.replicas.get(0).size()));
+            }
+            return null;
+        })));
+        return new CreatePartitionsResult(futures);
+    }
+
+    @Override
+    public synchronized DeleteTopicsResult deleteTopics(Collection<String> names, DeleteTopicsOptions options) {
+        call("deleteTopics");
+        var futures = new HashMap<String, KafkaFuture<Void>>();
+        names.forEach(name -> futures.put(name, respond(() -> {
+            injectedFailure(name);
+            if (topics.remove(name) == null) {
+                throw new UnknownTopicOrPartitionException("This server does not host this topic-partition.");
+            }
+            deleted.put(name, System.nanoTime() + metadataDelayNanos);
+            return null;
+        })));
+        return new DeleteTopicsResult(futures);
+    }
+
+    @Override
+    public ListTopicsResult listTopics(ListTopicsOptions options) {
+        call("listTopics");
+        return new ListTopicsResult(respond(() -> Stream.concat(topics.keySet().stream(), deleted.keySet().stream().filter(name -> !propagated(deleted.get(name))))
+                .distinct()
+                .collect(Collectors.toMap(name -> name, name -> new TopicListing(name, false)))));
+    }
+
+    @Override
+    public synchronized DescribeTopicsResult describeTopics(Collection<String> names, DescribeTopicsOptions options) {
+        call("describeTopics");
+        var futures = new HashMap<String, KafkaFuture<TopicDescription>>();
+        names.forEach(name -> futures.put(name, respond(() -> {
+            var replicas = topic(name).replicas;
+            var previous = previousCounts.get(name);
+            var count = previous != null && !propagated(previous[1]) ? (int) previous[0] : replicas.size();
+            var partitions = IntStream.range(0, count)
+                    .mapToObj(p -> {
+                        var nodes = replicas.get(p).stream().map(brokers::get).collect(Collectors.toList());
+                        return new TopicPartitionInfo(p, nodes.get(0), nodes, nodes);
+                    })
+                    .collect(Collectors.toList());
+            return new TopicDescription(name, false, partitions);
+        })));
+        return new DescribeTopicsResult(futures);
+    }
+
+    @Override
+    public synchronized DescribeConfigsResult describeConfigs(Collection<ConfigResource> resources, DescribeConfigsOptions options) {
+        call("describeConfigs");
+        var futures = new HashMap<ConfigResource, KafkaFuture<Config>>();
+        resources.forEach(resource -> futures.put(resource, respond(() -> {
+            var overrides = topic(resource.name()).overrides;
+            var entries = new ArrayList<ConfigEntry>();
+            DEFAULTS.forEach((name, value) -> entries.add(overrides.containsKey(name)
+                    ? ConfigEntries.of(name, overrides.get(name), ConfigEntry.ConfigSource.DYNAMIC_TOPIC_CONFIG)
+                    : ConfigEntries.of(name, value, ConfigEntry.ConfigSource.DEFAULT_CONFIG)));
+            return new Config(entries);
+        })));
+        return new DescribeConfigsResult(futures);
+    }
+
+    @Override
+    public DescribeClusterResult describeCluster(DescribeClusterOptions options) {
+        call("describeCluster");
+        return new DescribeClusterResult(respond(() -> brokers), respond(() -> brokers.get(0)), respond(() -> "in-memory"), respond(() -> null));
+    }
+
+    @Override
+    public synchronized AlterPartitionReassignmentsResult alterPartitionReassignments(Map<TopicPartition, Optional<NewPartitionReassignment>> reassignments,
+                                                                                   AlterPartitionReassignmentsOptions options) {
+        call("alterPartitionReassignments");
+        var futures = new HashMap<TopicPartition, KafkaFuture<Void>>();
+        reassignments.forEach((tp, reassignment) -> futures.put(tp, respond(() -> {
+            if (reassignment.isEmpty()) {
+                stalled.remove(tp);
+            } else if (stallReassignments) {
+                stalled.put(tp, reassignment.get().targetReplicas());
+            } else {
+                topic(tp.topic()).replicas.set(tp.partition(), new ArrayList<>(reassignment.get().targetReplicas()));
+            }
+            return null;
+        })));
+        return new AlterPartitionReassignmentsResult(futures);
+    }
+
+    @Override
+    public ListPartitionReassignmentsResult listPartitionReassignments(Optional<Set<TopicPartition>> partitions, ListPartitionReassignmentsOptions options) {
+        call("listPartitionReassignments");
+        return new ListPartitionReassignmentsResult(respond(() -> stalled.entrySet().stream()
+                .filter(e -> partitions.map(p -> p.contains(e.getKey())).orElse(true))
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> new PartitionReassignment(topic(e.getKey().topic()).replicas.get(e.getKey().partition()), e.getValue(), List.of())))));
+    }
+
+    // the cluster outlives the clients of single runs, see shutdown
+    @Override
+    public void close(Duration timeout) {
+    }
+
+    public void shutdown() {
+        network.shutdown();
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Map.of();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private Topic topic(String name) {
+        var topic = topics.get(name);
+        if (topic == null) {
+            throw new UnknownTopicOrPartitionException("This server does not host this topic-partition.");
+        }
+        return topic;
+    }
+
+    private static boolean propagated(long at) {
+        return System.nanoTime() >= at;
+    }
+
+    private void injectedFailure(String topic) {
+        var failure = failures.remove(topic);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // replicas of the partitions from the given one on, spread round robin over the brokers
+    private List<List<Integer>> assignment(int from, int partitions, int replicationFactor) {
+        return IntStream.range(from, from + partitions)
+                .mapToObj(p -> IntStream.range(0, replicationFactor).mapToObj(r -> (p + r) % brokers.size()).collect(Collectors.toList()))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private void call(String api) {
+        calls.computeIfAbsent(api, a -> new AtomicLong()).incrementAndGet();
+        var rejection = rejections.remove(api);
+        if (rejection != null) {
+            throw rejection;
+        }
+    }
+
+    // the outcome is computed when the request is made, and delivered after the latency
+    private <T> KafkaFuture<T> respond(Supplier<T> outcome) {
+        var future = new KafkaFutureImpl<T>();
+        T value = null;
+        RuntimeException error = null;
+        try {
+            value = outcome.get();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        var v = value;
+        var e = error;
+        network.schedule(() -> {
+            if (e != null) future.completeExceptionally(e);
+            else future.complete(v);
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    // ------------------------------------------------------------------------
+    // not used by the configurator
+
+    @Override
+    public DescribeAclsResult describeAcls(AclBindingFilter filter, DescribeAclsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CreateAclsResult createAcls(Collection<AclBinding> acls, CreateAclsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DeleteAclsResult deleteAcls(Collection<AclBindingFilter> filters, DeleteAclsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @Deprecated
+    public AlterConfigsResult alterConfigs(Map<ConfigResource, Config> configs, AlterConfigsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AlterReplicaLogDirsResult alterReplicaLogDirs(Map<TopicPartitionReplica, String> replicaAssignment, AlterReplicaLogDirsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeLogDirsResult describeLogDirs(Collection<Integer> brokers, DescribeLogDirsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeReplicaLogDirsResult describeReplicaLogDirs(Collection<TopicPartitionReplica> replicas, DescribeReplicaLogDirsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DeleteRecordsResult deleteRecords(Map<TopicPartition, RecordsToDelete> recordsToDelete, DeleteRecordsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CreateDelegationTokenResult createDelegationToken(CreateDelegationTokenOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RenewDelegationTokenResult renewDelegationToken(byte[] hmac, RenewDelegationTokenOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ExpireDelegationTokenResult expireDelegationToken(byte[] hmac, ExpireDelegationTokenOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeDelegationTokenResult describeDelegationToken(DescribeDelegationTokenOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeConsumerGroupsResult describeConsumerGroups(Collection<String> groupIds, DescribeConsumerGroupsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListConsumerGroupsResult listConsumerGroups(ListConsumerGroupsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListConsumerGroupOffsetsResult listConsumerGroupOffsets(String groupId, ListConsumerGroupOffsetsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DeleteConsumerGroupsResult deleteConsumerGroups(Collection<String> groupIds, DeleteConsumerGroupsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DeleteConsumerGroupOffsetsResult deleteConsumerGroupOffsets(String groupId, Set<TopicPartition> partitions, DeleteConsumerGroupOffsetsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ElectLeadersResult electLeaders(ElectionType electionType, Set<TopicPartition> partitions, ElectLeadersOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RemoveMembersFromConsumerGroupResult removeMembersFromConsumerGroup(String groupId, RemoveMembersFromConsumerGroupOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AlterConsumerGroupOffsetsResult alterConsumerGroupOffsets(String groupId, Map<TopicPartition, OffsetAndMetadata> offsets, AlterConsumerGroupOffsetsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListOffsetsResult listOffsets(Map<TopicPartition, OffsetSpec> topicPartitionOffsets, ListOffsetsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeClientQuotasResult describeClientQuotas(ClientQuotaFilter filter, DescribeClientQuotasOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AlterClientQuotasResult alterClientQuotas(Collection<ClientQuotaAlteration> entries, AlterClientQuotasOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeUserScramCredentialsResult describeUserScramCredentials(List<String> users, DescribeUserScramCredentialsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AlterUserScramCredentialsResult alterUserScramCredentials(List<UserScramCredentialAlteration> alterations, AlterUserScramCredentialsOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DescribeFeaturesResult describeFeatures(DescribeFeaturesOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public UpdateFeaturesResult updateFeatures(Map<String, FeatureUpdate> featureUpdates, UpdateFeaturesOptions options) {
+        throw new UnsupportedOperationException();
+    }
+}